@@ -1,17 +1,42 @@
 package ru.ifmo.rain.badyaev.arrayset;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
 
-    private final List<E> data;
-    private NavigableSet<E> descendingArraySet = null;
+    /**
+     * How elements are searched
+     */
+    public enum Lookup {
+        /**
+         * Binary search over the sorted list
+         */
+        BINARY,
+        /**
+         * Search over an additional copy of elements in breadth-first tree order, see {@link EytzingerLayout}.
+         * Several times faster while the set fits in cache, slower for sets of millions of elements,
+         * where binary search benefits from elements which are adjacent in memory, see {@link ArraySetBenchmark}
+         */
+        EYTZINGER,
+        /**
+         * Prediction of positions by a piecewise linear model of keys followed by search in a small window,
+         * see {@link LearnedIndex}. Only for numbers in natural order, best for large sets of smoothly distributed keys
+         */
+        LEARNED
+    }
+
+    private final ElementList<E> data;
+    private ArraySet<E> descendingArraySet = null;
     private final Comparator<? super E> comparator;
+    private final LookupIndex<E> lookupIndex;
     private final String UNSUPPORTED_OPERATION_MESSAGE = "Not applicable for immutable object";
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 16;
 
     public ArraySet() {
-        data = Collections.emptyList();
+        data = new ElementList<>(new Object[0], 0, 0, false);
         comparator = null;
+        lookupIndex = null;
     }
 
     public ArraySet(Collection<? extends E> collection) {
@@ -19,26 +44,184 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     public ArraySet(Collection<? extends E> collection, Comparator<? super E> comparator) {
-        TreeSet<E> set = new TreeSet<>(comparator);
-        set.addAll(collection);
+        this(collection, comparator, Lookup.BINARY);
+    }
 
-        data = new ArrayList<>(set);
+    /**
+     * @throws IllegalArgumentException if lookup is {@link Lookup#LEARNED} and elements are not numbers in natural order
+     */
+    public ArraySet(Collection<? extends E> collection, Comparator<? super E> comparator, Lookup lookup) {
+        data = sortedDistinct(collection, comparator);
         this.comparator = comparator;
+        this.lookupIndex = lookupIndex(data, comparator, lookup);
     }
 
-    private ArraySet(List<E> descendingCollection, Comparator<? super E> descendingComparator, NavigableSet<E> descendingSet) {
-        this.data = descendingCollection;
-        this.comparator = descendingComparator;
+    private ArraySet(ElementList<E> descendingData, Comparator<? super E> descendingComparator, LookupIndex<E> lookupIndex,
+                     ArraySet<E> descendingSet) {
+        this(descendingData, descendingComparator, lookupIndex);
         this.descendingArraySet = descendingSet;
     }
 
-    private ArraySet(List<E> data, Comparator<? super E> comparator) {
+    private ArraySet(ElementList<E> data, Comparator<? super E> comparator) {
+        this.data = data;
+        this.comparator = comparator;
+        this.lookupIndex = null;
+    }
+
+    private ArraySet(ElementList<E> data, Comparator<? super E> comparator, LookupIndex<E> lookupIndex) {
         this.data = data;
         this.comparator = comparator;
+        this.lookupIndex = lookupIndex;
+    }
+
+    private static <E> LookupIndex<E> lookupIndex(ElementList<E> data, Comparator<? super E> comparator, Lookup lookup) {
+        switch (lookup) {
+            case EYTZINGER:
+                return new EytzingerLayout<>(data, comparator);
+            case LEARNED:
+                if (comparator != null) {
+                    throw new IllegalArgumentException("Learned lookup requires natural order");
+                }
+                return new LearnedIndex<>(data);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Creates set from elements already sorted by the comparator in a single pass, equal neighbours are merged
+     *
+     * @throws IllegalArgumentException if elements are not sorted
+     */
+    public static <E> ArraySet<E> fromSorted(Collection<? extends E> sorted, Comparator<? super E> comparator) {
+        @SuppressWarnings("unchecked")
+        E[] elements = (E[]) sorted.toArray();
+        if (!isSorted(elements, comparator)) {
+            throw new IllegalArgumentException("Elements are not sorted");
+        }
+        return new ArraySet<>(distinct(elements, comparator), comparator);
+    }
+
+    /**
+     * Creates set over the array without copying, elements must be sorted by the comparator and distinct
+     */
+    static <E> ArraySet<E> of(Object[] sortedDistinct, Comparator<? super E> comparator) {
+        return new ArraySet<>(new ElementList<>(sortedDistinct, 0, sortedDistinct.length, false), comparator);
+    }
+
+    /**
+     * Elements of both sets, of equal elements the one from {@code first} is kept.
+     * Bulk operations below merge the sorted arrays, see {@link SortedMerge}
+     *
+     * @throws IllegalArgumentException if sets are ordered by different comparators
+     */
+    public static <E> ArraySet<E> union(ArraySet<E> first, ArraySet<E> second) {
+        return combine(first, second, SortedMerge.Operation.UNION);
+    }
+
+    /**
+     * Elements of {@code first} which are also in {@code second}
+     *
+     * @throws IllegalArgumentException if sets are ordered by different comparators
+     */
+    public static <E> ArraySet<E> intersection(ArraySet<E> first, ArraySet<E> second) {
+        return combine(first, second, SortedMerge.Operation.INTERSECTION);
+    }
+
+    /**
+     * Elements of {@code first} which are not in {@code second}
+     *
+     * @throws IllegalArgumentException if sets are ordered by different comparators
+     */
+    public static <E> ArraySet<E> difference(ArraySet<E> first, ArraySet<E> second) {
+        return combine(first, second, SortedMerge.Operation.DIFFERENCE);
+    }
+
+    /**
+     * Elements which are in exactly one of the sets
+     *
+     * @throws IllegalArgumentException if sets are ordered by different comparators
+     */
+    public static <E> ArraySet<E> symmetricDifference(ArraySet<E> first, ArraySet<E> second) {
+        return combine(first, second, SortedMerge.Operation.SYMMETRIC_DIFFERENCE);
+    }
+
+    private static <E> ArraySet<E> combine(ArraySet<E> first, ArraySet<E> second, SortedMerge.Operation operation) {
+        if (!Objects.equals(first.comparator, second.comparator)) {
+            throw new IllegalArgumentException("Sets are ordered by different comparators");
+        }
+        Object[] elements = SortedMerge.merge(first.data, second.data, first.comparator, operation);
+        return new ArraySet<>(new ElementList<>(elements, 0, elements.length, false), first.comparator);
+    }
+
+    /**
+     * Sorted sets with the same comparator are copied as is, sorted input is only deduplicated,
+     * other input is sorted by a stable sort first, so the first of equal elements is kept like in {@link TreeSet}
+     */
+    private static <E> ElementList<E> sortedDistinct(Collection<? extends E> collection, Comparator<? super E> comparator) {
+        @SuppressWarnings("unchecked")
+        E[] elements = (E[]) collection.toArray();
+        if (collection instanceof SortedSet && Objects.equals(((SortedSet<?>) collection).comparator(), comparator)) {
+            return new ElementList<>(elements, 0, elements.length, false);
+        }
+
+        if (!isSorted(elements, comparator)) {
+            if (elements.length >= PARALLEL_SORT_THRESHOLD) {
+                Arrays.parallelSort(elements, comparator);
+            } else {
+                Arrays.sort(elements, comparator);
+            }
+        }
+        return distinct(elements, comparator);
+    }
+
+    private static <E> boolean isSorted(E[] elements, Comparator<? super E> comparator) {
+        for (int i = 1; i < elements.length; i++) {
+            if (compare(elements[i - 1], elements[i], comparator) > 0) {
+                return false;
+            }
+        }
+        if (elements.length == 1) {
+            // the only element is not compared, but must be comparable like in TreeSet
+            compare(elements[0], elements[0], comparator);
+        }
+        return true;
+    }
+
+    private static <E> ElementList<E> distinct(E[] sorted, Comparator<? super E> comparator) {
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || compare(sorted[size - 1], sorted[i], comparator) != 0) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return new ElementList<>(size == sorted.length ? sorted : Arrays.copyOf(sorted, size), 0, size, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> int compare(E a, E b, Comparator<? super E> comparator) {
+        return comparator == null ? ((Comparable<? super E>) a).compareTo(b) : comparator.compare(a, b);
+    }
+
+    /**
+     * Same result as {@link Collections#binarySearch}. All views share lookup index of the whole set:
+     * its ceiling clamped to the view range is the ceiling inside the view, or the floor for a descending view.
+     */
+    private int search(E e) {
+        if (lookupIndex == null || data.isEmpty()) {
+            return Collections.binarySearch(data, e, comparator);
+        }
+
+        int ceiling = Math.min(Math.max(lookupIndex.ceilingIndex(e), data.from), data.to);
+        boolean found = ceiling < data.to && compare(data.element(ceiling), e, comparator) == 0;
+        if (data.reversed) {
+            return found ? data.to - 1 - ceiling : -(data.to - ceiling + 1);
+        }
+        return found ? ceiling - data.from : -(ceiling - data.from + 1);
     }
 
     private int findElementIndex(E e, int ifEqual, int ifNotEqual) {
-        int index = Collections.binarySearch(data, e, comparator);
+        int index = search(e);
         return index >= 0 ? index + ifEqual : -(index + 1) + ifNotEqual;
     }
 
@@ -46,10 +229,42 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
         return index >= 0 && index < size() ? data.get(index) : null;
     }
 
+    /**
+     * Returns element at the position in order of this set
+     *
+     * @throws IndexOutOfBoundsException if index is not in {@code [0, size())}
+     */
+    public E get(int index) {
+        return data.get(index);
+    }
+
+    /**
+     * Returns number of elements less than {@code e} in order of this set, which is the position of {@code e} if it is present
+     */
+    public int rank(E e) {
+        return findElementIndex(e, 0, 0);
+    }
+
+    /**
+     * Returns number of elements between bounds, which is the size of {@link #subSet} with the same arguments
+     */
+    public int countRange(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        int fromIndex = findElementIndex(fromElement, fromInclusive ? 0 : 1, 0);
+        int toIndex = findElementIndex(toElement, toInclusive ? 1 : 0, 0);
+        return Math.max(0, toIndex - fromIndex);
+    }
+
+    /**
+     * Same as {@link #countRange(Object, boolean, Object, boolean)} with inclusive {@code fromElement} and exclusive {@code toElement}
+     */
+    public int countRange(E fromElement, E toElement) {
+        return countRange(fromElement, true, toElement, false);
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public boolean contains(Object o) {
-        return Collections.binarySearch(data, (E) o, comparator) >= 0;
+        return search((E) o) >= 0;
     }
 
     @Override
@@ -112,15 +327,27 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
         return Collections.unmodifiableList(data).iterator();
     }
 
+    /**
+     * Splits the range of the backing array in halves and reports the comparator of the set,
+     * so parallel streams divide work evenly and sorted streams skip sorting
+     */
     @Override
-    public NavigableSet<E> descendingSet() {
-        if (descendingArraySet == null) {
-            List<E> dataCopy = new ArrayList<>(data);
-            Collections.reverse(dataCopy);
+    public Spliterator<E> spliterator() {
+        return new ElementSpliterator<>(data.elements, data.from, data.to, data.reversed, comparator);
+    }
 
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        spliterator().forEachRemaining(action);
+    }
+
+    @Override
+    public ArraySet<E> descendingSet() {
+        if (descendingArraySet == null) {
             descendingArraySet = new ArraySet<>(
-                    dataCopy,
+                    data.reversed(),
                     Collections.reverseOrder(comparator),
+                    lookupIndex,
                     this
             );
         }
@@ -134,23 +361,23 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     @Override
-    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+    public ArraySet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
         int fromIndex = findElementIndex(fromElement, fromInclusive ? 0 : 1, 0);
         int toIndex = findElementIndex(toElement, toInclusive ? 0 : -1, -1);
 
         if (fromIndex >= size() || toIndex < 0 || fromIndex > toIndex) {
-            return new ArraySet<>(Collections.emptyList(), comparator);
+            return new ArraySet<>(data.subList(0, 0), comparator, lookupIndex);
         }
-        return new ArraySet<>(data.subList(fromIndex, toIndex + 1), comparator);
+        return new ArraySet<>(data.subList(fromIndex, toIndex + 1), comparator, lookupIndex);
     }
 
     @Override
-    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+    public ArraySet<E> headSet(E toElement, boolean inclusive) {
         return subSet(getByIndex(0), true, toElement, inclusive);
     }
 
     @Override
-    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+    public ArraySet<E> tailSet(E fromElement, boolean inclusive) {
         return subSet(fromElement, inclusive, getByIndex(size() - 1), true);
     }
 
@@ -160,17 +387,17 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     @Override
-    public SortedSet<E> subSet(E fromElement, E toElement) {
+    public ArraySet<E> subSet(E fromElement, E toElement) {
         return subSet(fromElement, true, toElement, false);
     }
 
     @Override
-    public SortedSet<E> headSet(E toElement) {
+    public ArraySet<E> headSet(E toElement) {
         return headSet(toElement, false);
     }
 
     @Override
-    public SortedSet<E> tailSet(E fromElement) {
+    public ArraySet<E> tailSet(E fromElement) {
         return tailSet(fromElement, true);
     }
 
@@ -206,4 +433,131 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     public String toString() {
         return data.toString();
     }
-}
\ No newline at end of file
+
+    /**
+     * Range of the shared array, possibly in reverse order. Views of views are flat, so access cost does not grow.
+     */
+    private static class ElementList<E> extends AbstractList<E> implements RandomAccess {
+        private final Object[] elements;
+        private final int from;
+        private final int to;
+        private final boolean reversed;
+
+        ElementList(Object[] elements, int from, int to, boolean reversed) {
+            this.elements = elements;
+            this.from = from;
+            this.to = to;
+            this.reversed = reversed;
+        }
+
+        @SuppressWarnings("unchecked")
+        E element(int absoluteIndex) {
+            return (E) elements[absoluteIndex];
+        }
+
+        @Override
+        public E get(int index) {
+            Objects.checkIndex(index, size());
+            return element(reversed ? to - 1 - index : from + index);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public ElementList<E> subList(int fromIndex, int toIndex) {
+            Objects.checkFromToIndex(fromIndex, toIndex, size());
+            return reversed
+                    ? new ElementList<>(elements, to - toIndex, to - fromIndex, true)
+                    : new ElementList<>(elements, from + fromIndex, from + toIndex, false);
+        }
+
+        ElementList<E> reversed() {
+            return new ElementList<>(elements, from, to, !reversed);
+        }
+    }
+
+    /**
+     * Range {@code [low, high)} of the shared array, consumed from {@code low} or, if reversed, from {@code high}.
+     * Prefix split off in order of the set is the lower half of the range or, if reversed, the upper one.
+     */
+    private static class ElementSpliterator<E> implements Spliterator<E> {
+        private final Object[] elements;
+        private int low;
+        private int high;
+        private final boolean reversed;
+        private final Comparator<? super E> comparator;
+
+        ElementSpliterator(Object[] elements, int low, int high, boolean reversed, Comparator<? super E> comparator) {
+            this.elements = elements;
+            this.low = low;
+            this.high = high;
+            this.reversed = reversed;
+            this.comparator = comparator;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            if (low >= high) {
+                return false;
+            }
+            action.accept((E) elements[reversed ? --high : low++]);
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            Object[] elements = this.elements;
+            int low = this.low;
+            int high = this.high;
+            this.low = this.high;
+            if (reversed) {
+                for (int i = high - 1; i >= low; i--) {
+                    action.accept((E) elements[i]);
+                }
+            } else {
+                for (int i = low; i < high; i++) {
+                    action.accept((E) elements[i]);
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int middle = (low + high) >>> 1;
+            if (middle == low) {
+                return null;
+            }
+            ElementSpliterator<E> prefix;
+            if (reversed) {
+                prefix = new ElementSpliterator<>(elements, middle, high, true, comparator);
+                high = middle;
+            } else {
+                prefix = new ElementSpliterator<>(elements, low, middle, false, comparator);
+                low = middle;
+            }
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return high - low;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | IMMUTABLE;
+        }
+
+        @Override
+        public Comparator<? super E> getComparator() {
+            return comparator;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package ru.ifmo.rain.badyaev.arrayset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.function.BiFunction;
+
+/**
+ * Compares lookups of {@link ArraySet} with every {@link ArraySet.Lookup} on uniformly distributed random keys
+ * and on skewed keys from a log-normal distribution.
+ * Sets of 100M elements need about 16 GB of heap.
+ * Usage: ArraySetBenchmark [size...]
+ */
+public class ArraySetBenchmark {
+    private static final int WARMUP = 3;
+    private static final int ITERATIONS = 5;
+    private static final int QUERIES = 1 << 20;
+
+    private static final String[] OPERATIONS = {"contains", "floor", "ceiling", "lower", "higher"};
+    private static final String[] DISTRIBUTIONS = {"uniform", "skewed"};
+
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0 ? parseSizes(args) : new int[]{1_000, 1_000_000};
+        for (int size : sizes) {
+            for (String distribution : DISTRIBUTIONS) {
+                Random random = new Random(size);
+                List<Integer> elements = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    elements.add(next(random, distribution));
+                }
+                int[] queries = new int[QUERIES];
+                for (int i = 0; i < QUERIES; i++) {
+                    queries[i] = next(random, distribution);
+                }
+                benchmark(size, distribution, elements, queries);
+            }
+        }
+    }
+
+    private static int next(Random random, String distribution) {
+        return distribution.equals("uniform") ? random.nextInt() : (int) Math.exp(10 + 2 * random.nextGaussian());
+    }
+
+    private static void benchmark(int size, String distribution, List<Integer> elements, int[] queries) {
+        for (ArraySet.Lookup lookup : ArraySet.Lookup.values()) {
+            ArraySet<Integer> set = new ArraySet<>(elements, null, lookup);
+            StringBuilder line = new StringBuilder(String.format("%11d %-8s %-10s", size, distribution, lookup));
+            for (String operation : OPERATIONS) {
+                line.append(String.format(" %s %6.1f ns", operation, measure(set, queries, operation(operation))));
+            }
+            System.out.println(line);
+        }
+    }
+
+    private static BiFunction<NavigableSet<Integer>, Integer, Object> operation(String name) {
+        switch (name) {
+            case "contains":
+                return NavigableSet::contains;
+            case "floor":
+                return NavigableSet::floor;
+            case "ceiling":
+                return NavigableSet::ceiling;
+            case "lower":
+                return NavigableSet::lower;
+            default:
+                return NavigableSet::higher;
+        }
+    }
+
+    private static double measure(NavigableSet<Integer> set, int[] queries, BiFunction<NavigableSet<Integer>, Integer, Object> operation) {
+        Integer[] boxed = new Integer[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            boxed[i] = queries[i];
+        }
+
+        double best = Double.MAX_VALUE;
+        int found = 0;
+        for (int iteration = 0; iteration < WARMUP + ITERATIONS; iteration++) {
+            long start = System.nanoTime();
+            for (Integer query : boxed) {
+                Object result = operation.apply(set, query);
+                if (result != null && result != Boolean.FALSE) {
+                    found++;
+                }
+            }
+            double nanosPerQuery = (double) (System.nanoTime() - start) / queries.length;
+            if (iteration >= WARMUP) {
+                best = Math.min(best, nanosPerQuery);
+            }
+        }
+        if (found < 0) {
+            throw new AssertionError();
+        }
+        return best;
+    }
+
+    private static int[] parseSizes(String[] args) {
+        int[] sizes = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        return sizes;
+    }
+}
@@ -0,0 +1,263 @@
+package ru.ifmo.rain.badyaev.arrayset;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PrimitiveIterator;
+
+/**
+ * Versioned binary format of sets of this package. Every set starts with int magic, byte version, byte kind of the set
+ * and byte of flags, where the lowest bit marks a descending set. Then goes the number of elements and:
+ * <ul>
+ * <li>for {@link IntArraySet} and {@link LongArraySet}, the least value as a zigzag varint and gaps between
+ * ascending neighbours as unsigned varints, so dense sets take about a byte per element;</li>
+ * <li>for {@link StringArraySet}, length and bytes of the front-coded strings, see {@link FrontCodedStrings};</li>
+ * <li>for {@link ArraySet}, elements in order of the set written by an {@link ElementCodec},
+ * the comparator is given to the reader.</li>
+ * </ul>
+ * Numbers are unsigned little-endian base 128 varints. Readers check the input and decode elements directly
+ * into the array backing the set, growing it as elements arrive rather than trusting the written size,
+ * malformed input results in {@link IOException}.
+ */
+public class ArraySetCodec {
+    private static final int MAGIC = 0x41534554;
+    private static final int VERSION = 1;
+    private static final int INT_SET = 1;
+    private static final int LONG_SET = 2;
+    private static final int STRING_SET = 3;
+    private static final int ARRAY_SET = 4;
+    private static final int DESCENDING = 1;
+    private static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private ArraySetCodec() {
+    }
+
+    public static void write(IntArraySet set, DataOutput out) throws IOException {
+        boolean descending = set.comparator() != null;
+        writeHeader(out, INT_SET, descending, set.size());
+        PrimitiveIterator.OfInt values = descending ? set.descendingIterator() : set.iterator();
+        long previous = 0;
+        for (int i = 0; values.hasNext(); i++) {
+            long value = values.nextInt();
+            writeVarint(out, i == 0 ? zigzag(value) : value - previous);
+            previous = value;
+        }
+    }
+
+    public static IntArraySet readIntSet(DataInput in) throws IOException {
+        boolean descending = readHeader(in, INT_SET);
+        int size = readSize(in);
+        int[] values = new int[initialCapacity(size)];
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == values.length) {
+                values = Arrays.copyOf(values, grownCapacity(values.length, size));
+            }
+            long gap = readVarint(in);
+            long value = i == 0 ? unzigzag(gap) : previous + gap;
+            if (i > 0 && gap <= 0 || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                throw new IOException("Invalid value " + i);
+            }
+            values[i] = (int) value;
+            previous = value;
+        }
+        IntArraySet set = IntArraySet.of(values);
+        return descending ? set.descendingSet() : set;
+    }
+
+    public static void write(LongArraySet set, DataOutput out) throws IOException {
+        boolean descending = set.comparator() != null;
+        writeHeader(out, LONG_SET, descending, set.size());
+        PrimitiveIterator.OfLong values = descending ? set.descendingIterator() : set.iterator();
+        long previous = 0;
+        for (int i = 0; values.hasNext(); i++) {
+            long value = values.nextLong();
+            // gap between ascending longs fits in 64 bits as an unsigned number
+            writeVarint(out, i == 0 ? zigzag(value) : value - previous);
+            previous = value;
+        }
+    }
+
+    public static LongArraySet readLongSet(DataInput in) throws IOException {
+        boolean descending = readHeader(in, LONG_SET);
+        int size = readSize(in);
+        long[] values = new long[initialCapacity(size)];
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == values.length) {
+                values = Arrays.copyOf(values, grownCapacity(values.length, size));
+            }
+            long gap = readVarint(in);
+            long value = i == 0 ? unzigzag(gap) : previous + gap;
+            // sum with a nonzero gap is not greater only if it overflows
+            if (i > 0 && value <= previous) {
+                throw new IOException("Invalid value " + i);
+            }
+            values[i] = value;
+            previous = value;
+        }
+        LongArraySet set = LongArraySet.of(values);
+        return descending ? set.descendingSet() : set;
+    }
+
+    public static void write(StringArraySet set, DataOutput out) throws IOException {
+        FrontCodedStrings strings = set.encoded();
+        writeHeader(out, STRING_SET, set.comparator() != null, strings.size());
+        byte[] bytes = strings.bytes();
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    public static StringArraySet readStringSet(DataInput in) throws IOException {
+        boolean descending = readHeader(in, STRING_SET);
+        int size = readSize(in);
+        byte[] bytes = readBytes(in, readSize(in));
+        if (size > bytes.length) {
+            throw new IOException("Too many strings for " + bytes.length + " bytes: " + size);
+        }
+        StringArraySet set;
+        try {
+            set = StringArraySet.of(FrontCodedStrings.fromBytes(bytes, size));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid strings: " + e.getMessage(), e);
+        }
+        return descending ? set.descendingSet() : set;
+    }
+
+    public static <E> void write(ArraySet<E> set, ElementCodec<? super E> codec, DataOutput out) throws IOException {
+        writeHeader(out, ARRAY_SET, false, set.size());
+        for (E element : set) {
+            codec.write(element, out);
+        }
+    }
+
+    /**
+     * @param comparator order of the written set
+     */
+    public static <E> ArraySet<E> readArraySet(DataInput in, ElementCodec<? extends E> codec, Comparator<? super E> comparator)
+            throws IOException {
+        readHeader(in, ARRAY_SET);
+        int size = readSize(in);
+        Object[] elements = new Object[initialCapacity(size)];
+        for (int i = 0; i < size; i++) {
+            if (i == elements.length) {
+                elements = Arrays.copyOf(elements, grownCapacity(elements.length, size));
+            }
+            E element = codec.read(in);
+            if (i > 0 && compare(elements[i - 1], element, comparator) >= 0) {
+                throw new IOException("Elements are not in order of the comparator: " + i);
+            } else if (size == 1) {
+                // the only element is not compared, but must be comparable like in ArraySet constructor
+                compare(element, element, comparator);
+            }
+            elements[i] = element;
+        }
+        return ArraySet.of(elements, comparator);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> int compare(Object a, E b, Comparator<? super E> comparator) {
+        return comparator == null ? ((Comparable<? super E>) a).compareTo(b) : comparator.compare((E) a, b);
+    }
+
+    private static void writeHeader(DataOutput out, int kind, boolean descending, int size) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(kind);
+        out.writeByte(descending ? DESCENDING : 0);
+        writeVarint(out, size);
+    }
+
+    /**
+     * Returns whether the set is descending
+     */
+    private static boolean readHeader(DataInput in, int kind) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a set");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version);
+        }
+        int actualKind = in.readUnsignedByte();
+        if (actualKind != kind) {
+            throw new IOException("Expected set of kind " + kind + ", found " + actualKind);
+        }
+        int flags = in.readUnsignedByte();
+        if ((flags & ~DESCENDING) != 0) {
+            throw new IOException("Unknown flags " + flags);
+        }
+        return flags == DESCENDING;
+    }
+
+    private static int readSize(DataInput in) throws IOException {
+        long size = readVarint(in);
+        if (size < 0 || size > MAX_SIZE) {
+            throw new IOException("Invalid size " + Long.toUnsignedString(size));
+        }
+        return (int) size;
+    }
+
+    /**
+     * Arrays are grown while elements are read, so a corrupted size fails on the end of input
+     * instead of allocating memory for elements that are not there
+     */
+    private static int initialCapacity(int size) {
+        return Math.min(size, INITIAL_CAPACITY);
+    }
+
+    /**
+     * Doubled capacity, at most {@code size}, so a full array has exactly {@code size} elements
+     */
+    private static int grownCapacity(int capacity, int size) {
+        return (int) Math.min(2L * capacity, size);
+    }
+
+    private static byte[] readBytes(DataInput in, int length) throws IOException {
+        byte[] bytes = new byte[initialCapacity(length)];
+        int read = 0;
+        while (true) {
+            in.readFully(bytes, read, bytes.length - read);
+            read = bytes.length;
+            if (read == length) {
+                return bytes;
+            }
+            bytes = Arrays.copyOf(bytes, grownCapacity(read, length));
+        }
+    }
+
+    private static long zigzag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    private static long unzigzag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    private static void writeVarint(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarint(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = in.readUnsignedByte();
+            // only the lowest bit of the tenth byte fits in a long
+            if (shift == 63 && b > 1) {
+                throw new IOException("Varint is out of range");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+        }
+        throw new IOException("Varint is too long");
+    }
+}
@@ -0,0 +1,244 @@
+package ru.ifmo.rain.badyaev.arrayset;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Sorted array of distinct elements with two small sorted buffers: inserted elements, which are absent from the array,
+ * and deleted elements, which are still present in it. Reads merge the array with buffers on the fly.
+ * Buffers are merged into a new array in one linear pass when they outgrow four square roots of its size,
+ * so inserts shift at most that many elements and the merge is amortized over as many writes.
+ */
+class BufferedSortedArray<E> {
+    private static final int MIN_BUFFER = 64;
+
+    private final Comparator<? super E> comparator;
+    private Object[] base;
+    private int baseSize;
+    private Object[] inserts = new Object[MIN_BUFFER];
+    private int insertCount;
+    private Object[] deletes = new Object[MIN_BUFFER];
+    private int deleteCount;
+    int modCount;
+
+    /**
+     * @param sorted distinct elements sorted by comparator, the array is owned by this object after the call
+     */
+    BufferedSortedArray(Object[] sorted, Comparator<? super E> comparator) {
+        this.base = sorted;
+        this.baseSize = sorted.length;
+        this.comparator = comparator;
+    }
+
+    Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    int size() {
+        return baseSize - deleteCount + insertCount;
+    }
+
+    @SuppressWarnings("unchecked")
+    int compare(Object a, Object b) {
+        return comparator == null ? ((Comparable<Object>) a).compareTo(b) : comparator.compare((E) a, (E) b);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int search(Object[] array, int size, Object e) {
+        return Arrays.binarySearch((E[]) array, 0, size, (E) e, comparator);
+    }
+
+    /**
+     * Index of the first element greater than or equal to {@code e}, or greater than {@code e} if not inclusive
+     */
+    private int index(Object[] array, int size, Object e, boolean inclusive) {
+        int index = search(array, size, e);
+        return index >= 0 ? (inclusive ? index : index + 1) : -(index + 1);
+    }
+
+    boolean contains(Object e) {
+        if (search(base, baseSize, e) >= 0) {
+            return search(deletes, deleteCount, e) < 0;
+        }
+        return search(inserts, insertCount, e) >= 0;
+    }
+
+    boolean add(E e) {
+        if (search(base, baseSize, e) >= 0) {
+            int deleted = search(deletes, deleteCount, e);
+            if (deleted < 0) {
+                return false;
+            }
+            removeAt(deletes, deleteCount, deleted);
+            deleteCount--;
+        } else {
+            int inserted = search(inserts, insertCount, e);
+            if (inserted >= 0) {
+                return false;
+            }
+            inserts = insertAt(inserts, insertCount, -(inserted + 1), e);
+            insertCount++;
+        }
+        modified();
+        return true;
+    }
+
+    boolean remove(Object e) {
+        int inserted = search(inserts, insertCount, e);
+        if (inserted >= 0) {
+            removeAt(inserts, insertCount, inserted);
+            insertCount--;
+        } else {
+            int index = search(base, baseSize, e);
+            int deleted = search(deletes, deleteCount, e);
+            if (index < 0 || deleted >= 0) {
+                return false;
+            }
+            deletes = insertAt(deletes, deleteCount, -(deleted + 1), base[index]);
+            deleteCount++;
+        }
+        modified();
+        return true;
+    }
+
+    void clear() {
+        base = new Object[0];
+        baseSize = 0;
+        Arrays.fill(inserts, 0, insertCount, null);
+        insertCount = 0;
+        Arrays.fill(deletes, 0, deleteCount, null);
+        deleteCount = 0;
+        modCount++;
+    }
+
+    /**
+     * Number of elements less than {@code e}, or less than or equal to {@code e} if inclusive
+     */
+    int rank(Object e, boolean inclusive) {
+        return index(base, baseSize, e, !inclusive) - index(deletes, deleteCount, e, !inclusive)
+                + index(inserts, insertCount, e, !inclusive);
+    }
+
+    private void modified() {
+        modCount++;
+        if (insertCount + deleteCount > Math.max(MIN_BUFFER, 4 * (int) Math.sqrt(baseSize))) {
+            compact();
+        }
+    }
+
+    /**
+     * Merges buffers into the array: runs of the array between changed positions are copied as is,
+     * so only buffered elements are compared
+     */
+    void compact() {
+        Object[] merged = new Object[size()];
+        int size = 0;
+        int from = 0;
+        int deleted = 0;
+        int inserted = 0;
+        int deletePosition = deleteCount > 0 ? search(base, baseSize, deletes[0]) : baseSize;
+        int insertPosition = insertCount > 0 ? index(base, baseSize, inserts[0], true) : baseSize;
+        while (from < baseSize || inserted < insertCount) {
+            int to = Math.min(deletePosition, insertPosition);
+            System.arraycopy(base, from, merged, size, to - from);
+            size += to - from;
+            from = to;
+            if (inserted < insertCount && insertPosition == to) {
+                merged[size++] = inserts[inserted++];
+                insertPosition = inserted < insertCount ? index(base, baseSize, inserts[inserted], true) : baseSize;
+            } else if (deleted < deleteCount && deletePosition == to) {
+                from++;
+                deleted++;
+                deletePosition = deleted < deleteCount ? search(base, baseSize, deletes[deleted]) : baseSize;
+            }
+        }
+        clear();
+        base = merged;
+        baseSize = merged.length;
+    }
+
+    private static Object[] insertAt(Object[] array, int size, int index, Object e) {
+        if (size == array.length) {
+            array = Arrays.copyOf(array, 2 * size);
+        }
+        System.arraycopy(array, index, array, index + 1, size - index);
+        array[index] = e;
+        return array;
+    }
+
+    private static void removeAt(Object[] array, int size, int index) {
+        System.arraycopy(array, index + 1, array, index, size - index - 1);
+        array[size - 1] = null;
+    }
+
+    Cursor cursor(boolean ascending) {
+        return ascending ? new Cursor(0, 0, 0, true) : new Cursor(baseSize - 1, deleteCount - 1, insertCount - 1, false);
+    }
+
+    /**
+     * Cursor starting at the first element not less than {@code e} in its direction, or greater if not inclusive
+     */
+    Cursor cursor(Object e, boolean inclusive, boolean ascending) {
+        if (ascending) {
+            return new Cursor(index(base, baseSize, e, inclusive), index(deletes, deleteCount, e, inclusive),
+                    index(inserts, insertCount, e, inclusive), true);
+        }
+        return new Cursor(index(base, baseSize, e, !inclusive) - 1, index(deletes, deleteCount, e, !inclusive) - 1,
+                index(inserts, insertCount, e, !inclusive) - 1, false);
+    }
+
+    /**
+     * Merges the array and inserted elements in one direction, skipping deleted ones.
+     * Deleted elements are a subset of the array, so both are walked in lockstep.
+     */
+    class Cursor {
+        private int index;
+        private int deleted;
+        private int inserted;
+        private final int step;
+
+        private Cursor(int index, int deleted, int inserted, boolean ascending) {
+            this.index = index;
+            this.deleted = deleted;
+            this.inserted = inserted;
+            this.step = ascending ? 1 : -1;
+        }
+
+        private boolean inBase() {
+            while (index >= 0 && index < baseSize && deleted >= 0 && deleted < deleteCount && base[index] == deletes[deleted]) {
+                index += step;
+                deleted += step;
+            }
+            return index >= 0 && index < baseSize;
+        }
+
+        private boolean inInserts() {
+            return inserted >= 0 && inserted < insertCount;
+        }
+
+        boolean hasNext() {
+            return inBase() || inInserts();
+        }
+
+        /**
+         * Should be called only if {@link #hasNext} returns {@code true}
+         */
+        @SuppressWarnings("unchecked")
+        E next() {
+            boolean fromBase = inBase();
+            if (fromBase && inInserts()) {
+                fromBase = compare(base[index], inserts[inserted]) * step < 0;
+            }
+
+            E result;
+            if (fromBase) {
+                result = (E) base[index];
+                index += step;
+            } else {
+                result = (E) inserts[inserted];
+                inserted += step;
+            }
+            return result;
+        }
+    }
+}
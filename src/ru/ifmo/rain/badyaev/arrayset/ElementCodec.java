@@ -0,0 +1,14 @@
+package ru.ifmo.rain.badyaev.arrayset;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes and reads single elements of a set for {@link ArraySetCodec}
+ */
+public interface ElementCodec<E> {
+    void write(E element, DataOutput out) throws IOException;
+
+    E read(DataInput in) throws IOException;
+}
@@ -0,0 +1,52 @@
+package ru.ifmo.rain.badyaev.arrayset;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Copy of a sorted list in breadth-first order of the implicit search tree: children of node {@code k}
+ * are {@code 2k} and {@code 2k + 1}. Top levels of the tree share a few cache lines, and the search loop
+ * has no data-dependent branch except the comparison itself.
+ */
+class EytzingerLayout<E> implements LookupIndex<E> {
+    private final Object[] tree;
+    private final int[] positions;
+    private final Comparator<? super E> comparator;
+
+    EytzingerLayout(List<E> sorted, Comparator<? super E> comparator) {
+        this.tree = new Object[sorted.size() + 1];
+        this.positions = new int[sorted.size() + 1];
+        this.comparator = comparator;
+        fill(sorted, 0, 1);
+    }
+
+    /**
+     * Fills subtree of node {@code k} in order, starting from element {@code next}, returns the next element
+     */
+    private int fill(List<E> sorted, int next, int k) {
+        if (k < tree.length) {
+            next = fill(sorted, next, 2 * k);
+            tree[k] = sorted.get(next);
+            positions[k] = next++;
+            next = fill(sorted, next, 2 * k + 1);
+        }
+        return next;
+    }
+
+    @Override
+    public int ceilingIndex(E e) {
+        int n = tree.length - 1;
+        int k = 1;
+        while (k <= n) {
+            k = 2 * k + (compare(e, k) > 0 ? 1 : 0);
+        }
+        // path to the answer turned left last time, drop the right turns after it and that left turn
+        k >>= Integer.numberOfTrailingZeros(~k) + 1;
+        return k == 0 ? n : positions[k];
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E e, int k) {
+        return comparator == null ? ((Comparable<? super E>) e).compareTo((E) tree[k]) : comparator.compare(e, (E) tree[k]);
+    }
+}
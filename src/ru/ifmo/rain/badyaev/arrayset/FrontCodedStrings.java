@@ -0,0 +1,352 @@
+package ru.ifmo.rain.badyaev.arrayset;
+
+import java.util.Arrays;
+
+/**
+ * Sorted distinct strings front-coded in a single byte array. Strings are split into blocks of {@link #BLOCK_SIZE},
+ * the first string of a block is stored in full, each next one as the length of the prefix shared with the previous one
+ * and the rest. Offsets of blocks form a sparse index for binary search.
+ * <p>
+ * Chars are encoded one by one like in UTF-8, surrogates separately, so bytes compare in the same order as
+ * {@link String#compareTo} compares chars. Lengths are unsigned varints.
+ */
+class FrontCodedStrings {
+    static final int BLOCK_SIZE = 16;
+
+    private final byte[] data;
+    private final int[] blocks;
+    private final int size;
+
+    private FrontCodedStrings(byte[] data, int[] blocks, int size) {
+        this.data = data;
+        this.blocks = blocks;
+        this.size = size;
+    }
+
+    /**
+     * @param sorted distinct strings in natural order
+     */
+    static FrontCodedStrings encode(String[] sorted) {
+        int[] blocks = new int[(sorted.length + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        Output output = new Output();
+        byte[] previous = new byte[0];
+        for (int i = 0; i < sorted.length; i++) {
+            byte[] current = encode(sorted[i]);
+            if (i % BLOCK_SIZE == 0) {
+                blocks[i / BLOCK_SIZE] = output.size;
+                output.writeVarint(current.length);
+                output.write(current, 0, current.length);
+            } else {
+                int prefix = Arrays.mismatch(previous, current);
+                output.writeVarint(prefix);
+                output.writeVarint(current.length - prefix);
+                output.write(current, prefix, current.length - prefix);
+            }
+            previous = current;
+        }
+        return new FrontCodedStrings(Arrays.copyOf(output.bytes, output.size), blocks, sorted.length);
+    }
+
+    /**
+     * Restores the block index of bytes returned by {@link #bytes}, checking that they hold {@code size}
+     * well-formed strings in ascending order, each coded with the longest shared prefix
+     *
+     * @throws IllegalArgumentException if bytes are malformed
+     */
+    static FrontCodedStrings fromBytes(byte[] data, int size) {
+        // every string takes at least a byte for its length
+        if (size < 0 || size > data.length) {
+            throw new IllegalArgumentException("Too many strings for " + data.length + " bytes: " + size);
+        }
+        int[] blocks = new int[size == 0 ? 0 : (size - 1) / BLOCK_SIZE + 1];
+        byte[] previous = new byte[16];
+        int previousLength = 0;
+        byte[] current = new byte[16];
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            int prefix = 0;
+            if (i % BLOCK_SIZE == 0) {
+                blocks[i / BLOCK_SIZE] = offset;
+            } else {
+                prefix = readCheckedVarint(data, offset);
+                offset += varintSize(prefix);
+            }
+            int length = readCheckedVarint(data, offset);
+            offset += varintSize(length);
+            if (prefix > previousLength || length > data.length - offset) {
+                throw new IllegalArgumentException("Invalid length of string " + i);
+            }
+
+            if (prefix + length > current.length) {
+                current = Arrays.copyOf(current, Math.max(2 * current.length, prefix + length));
+            }
+            System.arraycopy(previous, 0, current, 0, prefix);
+            System.arraycopy(data, offset, current, prefix, length);
+            offset += length;
+
+            boolean ascending = i == 0 || (i % BLOCK_SIZE == 0
+                    ? Arrays.compareUnsigned(previous, 0, previousLength, current, 0, length) < 0
+                    : length > 0 && (prefix == previousLength || (current[prefix] & 0xFF) > (previous[prefix] & 0xFF)));
+            if (!ascending || !isWellFormed(current, prefix + length)) {
+                throw new IllegalArgumentException("Invalid string " + i);
+            }
+
+            byte[] swap = previous;
+            previous = current;
+            current = swap;
+            previousLength = prefix + length;
+        }
+        if (offset != data.length) {
+            throw new IllegalArgumentException("Unexpected bytes after strings");
+        }
+        return new FrontCodedStrings(data, blocks, size);
+    }
+
+    /**
+     * Encoded strings without the block index, the array is shared
+     */
+    byte[] bytes() {
+        return data;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Bytes used by the encoded strings and the block index
+     */
+    long footprint() {
+        return data.length + (long) blocks.length * Integer.BYTES;
+    }
+
+    static byte[] encode(String s) {
+        byte[] bytes = new byte[3 * s.length()];
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes[length++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[length++] = (byte) (0xC0 | c >> 6);
+                bytes[length++] = (byte) (0x80 | c & 0x3F);
+            } else {
+                bytes[length++] = (byte) (0xE0 | c >> 12);
+                bytes[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[length++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return length == bytes.length ? bytes : Arrays.copyOf(bytes, length);
+    }
+
+    static String decode(byte[] bytes, int length) {
+        char[] chars = new char[length];
+        int count = 0;
+        for (int i = 0; i < length; ) {
+            int b = bytes[i++] & 0xFF;
+            if (b < 0x80) {
+                chars[count++] = (char) b;
+            } else if (b < 0xE0) {
+                chars[count++] = (char) ((b & 0x1F) << 6 | bytes[i++] & 0x3F);
+            } else {
+                chars[count++] = (char) ((b & 0x0F) << 12 | (bytes[i++] & 0x3F) << 6 | bytes[i++] & 0x3F);
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    /**
+     * Same result as {@link Arrays#binarySearch} over all strings
+     */
+    int search(String s) {
+        byte[] key = encode(s);
+
+        // last block starting with a string not greater than the key
+        int low = 0;
+        int high = blocks.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int offset = blocks[middle];
+            int length = readVarint(offset);
+            int c = Arrays.compareUnsigned(data, offset + varintSize(length), offset + varintSize(length) + length, key, 0, key.length);
+            if (c < 0) {
+                low = middle + 1;
+            } else if (c > 0) {
+                high = middle - 1;
+            } else {
+                return middle * BLOCK_SIZE;
+            }
+        }
+        return high < 0 ? -1 : searchBlock(high, key);
+    }
+
+    /**
+     * Scans the block knowing how many leading bytes the previous string shares with the key: if the next string
+     * shares less with the previous one, it is greater than the key, if more, it is less than the key like the previous one,
+     * and only if equally, its rest is compared with the key.
+     */
+    private int searchBlock(int block, byte[] key) {
+        int offset = blocks[block];
+        int count = Math.min(BLOCK_SIZE, size - block * BLOCK_SIZE);
+        int matched = 0;
+        for (int i = 0; i < count; i++) {
+            int prefix = 0;
+            if (i > 0) {
+                prefix = readVarint(offset);
+                offset += varintSize(prefix);
+            }
+            int length = readVarint(offset);
+            offset += varintSize(length);
+
+            int c;
+            if (prefix < matched) {
+                c = 1;
+            } else if (prefix > matched) {
+                c = -1;
+            } else {
+                int common = 0;
+                while (common < length && matched + common < key.length && data[offset + common] == key[matched + common]) {
+                    common++;
+                }
+                matched += common;
+                if (common < length && matched < key.length) {
+                    c = (data[offset + common] & 0xFF) - (key[matched] & 0xFF);
+                } else {
+                    c = prefix + length - key.length;
+                }
+            }
+
+            if (c == 0) {
+                return block * BLOCK_SIZE + i;
+            } else if (c > 0) {
+                return -(block * BLOCK_SIZE + i + 1);
+            }
+            offset += length;
+        }
+        return -(block * BLOCK_SIZE + count + 1);
+    }
+
+    String get(int index) {
+        String[] block = new String[BLOCK_SIZE];
+        decodeBlock(index / BLOCK_SIZE, block, index % BLOCK_SIZE, index % BLOCK_SIZE + 1);
+        return block[index % BLOCK_SIZE];
+    }
+
+    /**
+     * Decodes all strings of the block into the array
+     */
+    void decodeBlock(int block, String[] strings) {
+        decodeBlock(block, strings, 0, Math.min(BLOCK_SIZE, size - block * BLOCK_SIZE));
+    }
+
+    /**
+     * Restores bytes of strings up to {@code count} and decodes those starting from {@code from}
+     */
+    private void decodeBlock(int block, String[] strings, int from, int count) {
+        byte[] current = new byte[16];
+        int offset = blocks[block];
+        for (int i = 0; i < count; i++) {
+            int prefix = 0;
+            if (i > 0) {
+                prefix = readVarint(offset);
+                offset += varintSize(prefix);
+            }
+            int length = readVarint(offset);
+            offset += varintSize(length);
+            if (prefix + length > current.length) {
+                current = Arrays.copyOf(current, Math.max(2 * current.length, prefix + length));
+            }
+            System.arraycopy(data, offset, current, prefix, length);
+            offset += length;
+            if (i >= from) {
+                strings[i] = decode(current, prefix + length);
+            }
+        }
+    }
+
+    /**
+     * Checks that chars are encoded as by {@link #encode(String)}, each in the shortest form
+     */
+    private static boolean isWellFormed(byte[] bytes, int length) {
+        for (int i = 0; i < length; ) {
+            int b = bytes[i++] & 0xFF;
+            if (b >= 0xC2 && b < 0xE0) {
+                if (i >= length || (bytes[i++] & 0xC0) != 0x80) {
+                    return false;
+                }
+            } else if (b >= 0xE0 && b < 0xF0) {
+                if (i + 1 >= length || (bytes[i] & 0xC0) != 0x80 || (bytes[i + 1] & 0xC0) != 0x80
+                        || b == 0xE0 && (bytes[i] & 0xFF) < 0xA0) {
+                    return false;
+                }
+                i += 2;
+            } else if (b >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a varint written by {@link Output#writeVarint}, rejecting values out of bounds and non-shortest forms
+     */
+    private static int readCheckedVarint(byte[] data, int offset) {
+        long value = 0;
+        for (int shift = 0; offset < data.length && shift < 35; shift += 7) {
+            byte b = data[offset++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value > Integer.MAX_VALUE || varintSize((int) value) != shift / 7 + 1) {
+                    break;
+                }
+                return (int) value;
+            }
+        }
+        throw new IllegalArgumentException("Invalid length at " + offset);
+    }
+
+    private int readVarint(int offset) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = data[offset++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static int varintSize(int value) {
+        return value < 1 << 7 ? 1 : value < 1 << 14 ? 2 : value < 1 << 21 ? 3 : value < 1 << 28 ? 4 : 5;
+    }
+
+    private static class Output {
+        private byte[] bytes = new byte[1 << 10];
+        private int size;
+
+        void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                writeByte(value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            writeByte(value);
+        }
+
+        private void writeByte(int b) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void write(byte[] b, int from, int length) {
+            ensureCapacity(length);
+            System.arraycopy(b, from, bytes, size, length);
+            size += length;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, size + extra));
+            }
+        }
+    }
+}
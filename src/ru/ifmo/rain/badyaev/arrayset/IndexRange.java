@@ -0,0 +1,128 @@
+package ru.ifmo.rain.badyaev.arrayset;
+
+/**
+ * Range {@code [from, to)} of indices of a sorted sequence of distinct elements, possibly viewed in reverse order.
+ * Implements search and navigation of sets over such sequences, like {@link IntArraySet}, in terms of indices,
+ * so sets only provide access to their elements and compare them with the searched one.
+ * Navigation methods return indices in the sequence, which are outside of the range if there is no such element.
+ */
+class IndexRange {
+    /**
+     * Comparison of the element at the index with the searched element, like {@link Comparable#compareTo}
+     */
+    interface Comparison {
+        int compareAt(long index);
+    }
+
+    final long from;
+    final long to;
+    final boolean reversed;
+
+    IndexRange(long from, long to, boolean reversed) {
+        this.from = from;
+        this.to = to;
+        this.reversed = reversed;
+    }
+
+    long size() {
+        return to - from;
+    }
+
+    boolean isEmpty() {
+        return from == to;
+    }
+
+    boolean contains(long index) {
+        return index >= from && index < to;
+    }
+
+    // Searches below work in ascending order of elements and return indices in [from, to]
+
+    /**
+     * Returns index of the element, or {@code -(insertion point + 1)} like {@link java.util.Arrays#binarySearch}
+     */
+    long search(Comparison comparison) {
+        long low = from;
+        long high = to - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            int result = comparison.compareAt(middle);
+            if (result < 0) {
+                low = middle + 1;
+            } else if (result > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private long ceiling(Comparison comparison) {
+        long index = search(comparison);
+        return index >= 0 ? index : -(index + 1);
+    }
+
+    private long higher(Comparison comparison) {
+        long index = search(comparison);
+        return index >= 0 ? index + 1 : -(index + 1);
+    }
+
+    // Navigation below works in order of the view
+
+    long lowerIndex(Comparison comparison) {
+        return reversed ? higher(comparison) : ceiling(comparison) - 1;
+    }
+
+    long floorIndex(Comparison comparison) {
+        return reversed ? ceiling(comparison) : higher(comparison) - 1;
+    }
+
+    long ceilingIndex(Comparison comparison) {
+        return reversed ? higher(comparison) - 1 : ceiling(comparison);
+    }
+
+    long higherIndex(Comparison comparison) {
+        return reversed ? ceiling(comparison) - 1 : higher(comparison);
+    }
+
+    long firstIndex() {
+        return reversed ? to - 1 : from;
+    }
+
+    long lastIndex() {
+        return reversed ? from : to - 1;
+    }
+
+    IndexRange descending() {
+        return new IndexRange(from, to, !reversed);
+    }
+
+    /**
+     * @param order comparison of {@code fromElement} with {@code toElement}
+     * @throws IllegalArgumentException if {@code fromElement} is after {@code toElement} in order of the view
+     */
+    IndexRange subRange(Comparison fromElement, boolean fromInclusive, Comparison toElement, boolean toInclusive, int order) {
+        if (reversed ? order < 0 : order > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        Comparison low = reversed ? toElement : fromElement;
+        Comparison high = reversed ? fromElement : toElement;
+        boolean lowInclusive = reversed ? toInclusive : fromInclusive;
+        boolean highInclusive = reversed ? fromInclusive : toInclusive;
+
+        long fromIndex = lowInclusive ? ceiling(low) : higher(low);
+        long toIndex = Math.max(fromIndex, highInclusive ? higher(high) : ceiling(high));
+        return new IndexRange(fromIndex, toIndex, reversed);
+    }
+
+    IndexRange headRange(Comparison toElement, boolean inclusive) {
+        long index = reversed ^ inclusive ? higher(toElement) : ceiling(toElement);
+        return reversed ? new IndexRange(index, to, true) : new IndexRange(from, index, false);
+    }
+
+    IndexRange tailRange(Comparison fromElement, boolean inclusive) {
+        long index = reversed ^ inclusive ? ceiling(fromElement) : higher(fromElement);
+        return reversed ? new IndexRange(from, index, true) : new IndexRange(index, to, false);
+    }
+}
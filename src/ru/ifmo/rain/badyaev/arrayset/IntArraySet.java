@@ -0,0 +1,283 @@
+package ru.ifmo.rain.badyaev.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable {@link NavigableSet} of ints in natural order, stored in a sorted {@code int[]} without boxing.
+ * Views share the array: subsets narrow the index range and descending view mirrors indices, see {@link IndexRange}.
+ * Primitive navigation methods like {@link #floorInt} throw {@link NoSuchElementException} instead of returning {@code null}.
+ */
+public class IntArraySet extends AbstractSet<Integer> implements NavigableSet<Integer> {
+
+    private final int[] data;
+    private final IndexRange range;
+    private final String UNSUPPORTED_OPERATION_MESSAGE = "Not applicable for immutable object";
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 16;
+
+    public IntArraySet() {
+        this(new int[0], false);
+    }
+
+    public IntArraySet(int... values) {
+        this(distinctSorted(values.clone()), false);
+    }
+
+    public IntArraySet(Collection<? extends Integer> collection) {
+        this(distinctSorted(collection.stream().mapToInt(Integer::intValue).toArray()), false);
+    }
+
+    /**
+     * Creates set over the array without copying, values must be sorted and distinct
+     */
+    static IntArraySet of(int[] sortedDistinct) {
+        return new IntArraySet(sortedDistinct, false);
+    }
+
+    private IntArraySet(int[] data, boolean reversed) {
+        this(data, new IndexRange(0, data.length, reversed));
+    }
+
+    private IntArraySet(int[] data, IndexRange range) {
+        this.data = data;
+        this.range = range;
+    }
+
+    private static int[] distinctSorted(int[] values) {
+        if (!isSorted(values)) {
+            if (values.length >= PARALLEL_SORT_THRESHOLD) {
+                Arrays.parallelSort(values);
+            } else {
+                Arrays.sort(values);
+            }
+        }
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || values[i] != values[size - 1]) {
+                values[size++] = values[i];
+            }
+        }
+        return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+
+    private static boolean isSorted(int[] values) {
+        for (int i = 1; i < values.length; i++) {
+            if (values[i - 1] > values[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private IndexRange.Comparison compareWith(int value) {
+        return index -> Integer.compare(data[(int) index], value);
+    }
+
+    private int get(long index, String message) {
+        if (!range.contains(index)) {
+            throw new NoSuchElementException(message);
+        }
+        return data[(int) index];
+    }
+
+    public boolean containsInt(int value) {
+        return range.search(compareWith(value)) >= 0;
+    }
+
+    public int lowerInt(int value) {
+        return get(range.lowerIndex(compareWith(value)), "No lower element");
+    }
+
+    public int floorInt(int value) {
+        return get(range.floorIndex(compareWith(value)), "No floor element");
+    }
+
+    public int ceilingInt(int value) {
+        return get(range.ceilingIndex(compareWith(value)), "No ceiling element");
+    }
+
+    public int higherInt(int value) {
+        return get(range.higherIndex(compareWith(value)), "No higher element");
+    }
+
+    public int firstInt() {
+        return get(range.firstIndex(), "IntArraySet is empty and cannot return first element");
+    }
+
+    public int lastInt() {
+        return get(range.lastIndex(), "IntArraySet is empty and cannot return last element");
+    }
+
+    public int[] toIntArray() {
+        int[] result = Arrays.copyOfRange(data, (int) range.from, (int) range.to);
+        if (range.reversed) {
+            for (int i = 0, j = result.length - 1; i < j; i++, j--) {
+                int tmp = result[i];
+                result[i] = result[j];
+                result[j] = tmp;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && containsInt((Integer) o);
+    }
+
+    @Override
+    public Integer lower(Integer e) {
+        return box(range.lowerIndex(compareWith(e)));
+    }
+
+    @Override
+    public Integer floor(Integer e) {
+        return box(range.floorIndex(compareWith(e)));
+    }
+
+    @Override
+    public Integer ceiling(Integer e) {
+        return box(range.ceilingIndex(compareWith(e)));
+    }
+
+    @Override
+    public Integer higher(Integer e) {
+        return box(range.higherIndex(compareWith(e)));
+    }
+
+    private Integer box(long index) {
+        return range.contains(index) ? data[(int) index] : null;
+    }
+
+    @Override
+    public Integer pollFirst() {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public Integer pollLast() {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public boolean add(Integer e) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Integer> c) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private long index = range.firstIndex();
+
+            @Override
+            public boolean hasNext() {
+                return range.contains(index);
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return data[(int) (range.reversed ? index-- : index++)];
+            }
+        };
+    }
+
+    @Override
+    public IntArraySet descendingSet() {
+        return new IntArraySet(data, range.descending());
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    public IntArraySet subSet(int fromElement, boolean fromInclusive, int toElement, boolean toInclusive) {
+        return new IntArraySet(data, range.subRange(compareWith(fromElement), fromInclusive,
+                compareWith(toElement), toInclusive, Integer.compare(fromElement, toElement)));
+    }
+
+    public IntArraySet headSet(int toElement, boolean inclusive) {
+        return new IntArraySet(data, range.headRange(compareWith(toElement), inclusive));
+    }
+
+    public IntArraySet tailSet(int fromElement, boolean inclusive) {
+        return new IntArraySet(data, range.tailRange(compareWith(fromElement), inclusive));
+    }
+
+    @Override
+    public IntArraySet subSet(Integer fromElement, boolean fromInclusive, Integer toElement, boolean toInclusive) {
+        return subSet((int) fromElement, fromInclusive, (int) toElement, toInclusive);
+    }
+
+    @Override
+    public IntArraySet headSet(Integer toElement, boolean inclusive) {
+        return headSet((int) toElement, inclusive);
+    }
+
+    @Override
+    public IntArraySet tailSet(Integer fromElement, boolean inclusive) {
+        return tailSet((int) fromElement, inclusive);
+    }
+
+    @Override
+    public Comparator<? super Integer> comparator() {
+        return range.reversed ? Collections.reverseOrder() : null;
+    }
+
+    @Override
+    public IntArraySet subSet(Integer fromElement, Integer toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public IntArraySet headSet(Integer toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public IntArraySet tailSet(Integer fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Integer first() {
+        return firstInt();
+    }
+
+    @Override
+    public Integer last() {
+        return lastInt();
+    }
+
+    @Override
+    public int size() {
+        return (int) range.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return range.isEmpty();
+    }
+}
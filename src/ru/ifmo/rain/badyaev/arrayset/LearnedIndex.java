@@ -0,0 +1,127 @@
+package ru.ifmo.rain.badyaev.arrayset;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Piecewise linear model of positions of numbers in a sorted list, like in PGM-index. Segments are built greedily
+ * in one pass: a segment is extended while some line through its first point predicts every position
+ * with error at most {@link #EPSILON}. A lookup finds the segment by binary search over first keys of segments,
+ * which are few for smooth distributions, and searches the list only in the window around the predicted position.
+ * If the window turns out not to contain the answer, which may happen when distinct keys have equal {@code double} values,
+ * the whole list is searched.
+ */
+class LearnedIndex<E> implements LookupIndex<E> {
+    private static final int EPSILON = 32;
+
+    private final List<E> sorted;
+    private final double[] firstKeys;
+    private final int[] starts;
+    private final double[] slopes;
+
+    /**
+     * @throws IllegalArgumentException if elements are not numbers
+     */
+    LearnedIndex(List<E> sorted) {
+        this.sorted = sorted;
+        int n = sorted.size();
+        double[] firstKeys = new double[1];
+        int[] starts = new int[1];
+        double[] slopes = new double[1];
+        int segments = 0;
+
+        int start = 0;
+        while (start < n) {
+            double x0 = key(start);
+            double low = 0;
+            double high = Double.POSITIVE_INFINITY;
+            int end = start + 1;
+            for (; end < n; end++) {
+                double dx = key(end) - x0;
+                if (dx == 0) {
+                    if (end - start > EPSILON) {
+                        break;
+                    }
+                    continue;
+                }
+                double endLow = (end - start - EPSILON) / dx;
+                double endHigh = (end - start + EPSILON) / dx;
+                if (endLow > high || endHigh < low) {
+                    break;
+                }
+                low = Math.max(low, endLow);
+                high = Math.min(high, endHigh);
+            }
+
+            if (segments == firstKeys.length) {
+                firstKeys = Arrays.copyOf(firstKeys, 2 * segments);
+                starts = Arrays.copyOf(starts, 2 * segments);
+                slopes = Arrays.copyOf(slopes, 2 * segments);
+            }
+            firstKeys[segments] = x0;
+            starts[segments] = start;
+            slopes[segments] = high == Double.POSITIVE_INFINITY ? low : (low + high) / 2;
+            segments++;
+            start = end;
+        }
+
+        this.firstKeys = Arrays.copyOf(firstKeys, segments);
+        this.starts = Arrays.copyOf(starts, segments);
+        this.slopes = Arrays.copyOf(slopes, segments);
+    }
+
+    private double key(int index) {
+        E e = sorted.get(index);
+        if (!(e instanceof Number)) {
+            throw new IllegalArgumentException("Learned lookup requires numbers, found " + e);
+        }
+        return ((Number) e).doubleValue();
+    }
+
+    /**
+     * Number of linear segments of the model
+     */
+    int segments() {
+        return firstKeys.length;
+    }
+
+    @Override
+    public int ceilingIndex(E e) {
+        int n = sorted.size();
+        if (n == 0) {
+            return 0;
+        }
+        double x = ((Number) e).doubleValue();
+        int segment = Arrays.binarySearch(firstKeys, x);
+        segment = Math.max(segment >= 0 ? segment : -(segment + 1) - 1, 0);
+
+        // keys up to the first key of the next segment have their ceiling inside the segment or at its end
+        int start = starts[segment];
+        int end = segment + 1 < starts.length ? starts[segment + 1] : n;
+        double predicted = Math.min(Math.max(start + slopes[segment] * (x - firstKeys[segment]), start), end);
+        int low = (int) Math.max(start, predicted - EPSILON - 1);
+        int high = (int) Math.min(end, predicted + EPSILON + 2);
+
+        int ceiling = ceilingIndex(e, low, high);
+        boolean found = (ceiling > low || low == 0 || compare(sorted.get(low - 1), e) < 0)
+                && (ceiling < high || high == n || compare(sorted.get(high), e) >= 0);
+        return found ? ceiling : ceilingIndex(e, 0, n);
+    }
+
+    private int ceilingIndex(E e, int low, int high) {
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(sorted.get(middle), e) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        return ((Comparable<? super E>) a).compareTo(b);
+    }
+}
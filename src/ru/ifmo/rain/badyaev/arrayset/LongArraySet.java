@@ -0,0 +1,283 @@
+package ru.ifmo.rain.badyaev.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable {@link NavigableSet} of longs in natural order, stored in a sorted {@code long[]} without boxing.
+ * Views share the array: subsets narrow the index range and descending view mirrors indices, see {@link IndexRange}.
+ * Primitive navigation methods like {@link #floorLong} throw {@link NoSuchElementException} instead of returning {@code null}.
+ */
+public class LongArraySet extends AbstractSet<Long> implements NavigableSet<Long> {
+
+    private final long[] data;
+    private final IndexRange range;
+    private final String UNSUPPORTED_OPERATION_MESSAGE = "Not applicable for immutable object";
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 16;
+
+    public LongArraySet() {
+        this(new long[0], false);
+    }
+
+    public LongArraySet(long... values) {
+        this(distinctSorted(values.clone()), false);
+    }
+
+    public LongArraySet(Collection<? extends Long> collection) {
+        this(distinctSorted(collection.stream().mapToLong(Long::longValue).toArray()), false);
+    }
+
+    /**
+     * Creates set over the array without copying, values must be sorted and distinct
+     */
+    static LongArraySet of(long[] sortedDistinct) {
+        return new LongArraySet(sortedDistinct, false);
+    }
+
+    private LongArraySet(long[] data, boolean reversed) {
+        this(data, new IndexRange(0, data.length, reversed));
+    }
+
+    private LongArraySet(long[] data, IndexRange range) {
+        this.data = data;
+        this.range = range;
+    }
+
+    private static long[] distinctSorted(long[] values) {
+        if (!isSorted(values)) {
+            if (values.length >= PARALLEL_SORT_THRESHOLD) {
+                Arrays.parallelSort(values);
+            } else {
+                Arrays.sort(values);
+            }
+        }
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || values[i] != values[size - 1]) {
+                values[size++] = values[i];
+            }
+        }
+        return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+
+    private static boolean isSorted(long[] values) {
+        for (int i = 1; i < values.length; i++) {
+            if (values[i - 1] > values[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private IndexRange.Comparison compareWith(long value) {
+        return index -> Long.compare(data[(int) index], value);
+    }
+
+    private long get(long index, String message) {
+        if (!range.contains(index)) {
+            throw new NoSuchElementException(message);
+        }
+        return data[(int) index];
+    }
+
+    public boolean containsLong(long value) {
+        return range.search(compareWith(value)) >= 0;
+    }
+
+    public long lowerLong(long value) {
+        return get(range.lowerIndex(compareWith(value)), "No lower element");
+    }
+
+    public long floorLong(long value) {
+        return get(range.floorIndex(compareWith(value)), "No floor element");
+    }
+
+    public long ceilingLong(long value) {
+        return get(range.ceilingIndex(compareWith(value)), "No ceiling element");
+    }
+
+    public long higherLong(long value) {
+        return get(range.higherIndex(compareWith(value)), "No higher element");
+    }
+
+    public long firstLong() {
+        return get(range.firstIndex(), "LongArraySet is empty and cannot return first element");
+    }
+
+    public long lastLong() {
+        return get(range.lastIndex(), "LongArraySet is empty and cannot return last element");
+    }
+
+    public long[] toLongArray() {
+        long[] result = Arrays.copyOfRange(data, (int) range.from, (int) range.to);
+        if (range.reversed) {
+            for (int i = 0, j = result.length - 1; i < j; i++, j--) {
+                long tmp = result[i];
+                result[i] = result[j];
+                result[j] = tmp;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long && containsLong((Long) o);
+    }
+
+    @Override
+    public Long lower(Long e) {
+        return box(range.lowerIndex(compareWith(e)));
+    }
+
+    @Override
+    public Long floor(Long e) {
+        return box(range.floorIndex(compareWith(e)));
+    }
+
+    @Override
+    public Long ceiling(Long e) {
+        return box(range.ceilingIndex(compareWith(e)));
+    }
+
+    @Override
+    public Long higher(Long e) {
+        return box(range.higherIndex(compareWith(e)));
+    }
+
+    private Long box(long index) {
+        return range.contains(index) ? data[(int) index] : null;
+    }
+
+    @Override
+    public Long pollFirst() {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public Long pollLast() {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public boolean add(Long e) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Long> c) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private long index = range.firstIndex();
+
+            @Override
+            public boolean hasNext() {
+                return range.contains(index);
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return data[(int) (range.reversed ? index-- : index++)];
+            }
+        };
+    }
+
+    @Override
+    public LongArraySet descendingSet() {
+        return new LongArraySet(data, range.descending());
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    public LongArraySet subSet(long fromElement, boolean fromInclusive, long toElement, boolean toInclusive) {
+        return new LongArraySet(data, range.subRange(compareWith(fromElement), fromInclusive,
+                compareWith(toElement), toInclusive, Long.compare(fromElement, toElement)));
+    }
+
+    public LongArraySet headSet(long toElement, boolean inclusive) {
+        return new LongArraySet(data, range.headRange(compareWith(toElement), inclusive));
+    }
+
+    public LongArraySet tailSet(long fromElement, boolean inclusive) {
+        return new LongArraySet(data, range.tailRange(compareWith(fromElement), inclusive));
+    }
+
+    @Override
+    public LongArraySet subSet(Long fromElement, boolean fromInclusive, Long toElement, boolean toInclusive) {
+        return subSet((long) fromElement, fromInclusive, (long) toElement, toInclusive);
+    }
+
+    @Override
+    public LongArraySet headSet(Long toElement, boolean inclusive) {
+        return headSet((long) toElement, inclusive);
+    }
+
+    @Override
+    public LongArraySet tailSet(Long fromElement, boolean inclusive) {
+        return tailSet((long) fromElement, inclusive);
+    }
+
+    @Override
+    public Comparator<? super Long> comparator() {
+        return range.reversed ? Collections.reverseOrder() : null;
+    }
+
+    @Override
+    public LongArraySet subSet(Long fromElement, Long toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public LongArraySet headSet(Long toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public LongArraySet tailSet(Long fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Long first() {
+        return firstLong();
+    }
+
+    @Override
+    public Long last() {
+        return lastLong();
+    }
+
+    @Override
+    public int size() {
+        return (int) range.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return range.isEmpty();
+    }
+}
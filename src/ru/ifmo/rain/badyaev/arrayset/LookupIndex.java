@@ -0,0 +1,12 @@
+package ru.ifmo.rain.badyaev.arrayset;
+
+/**
+ * Structure built over the sorted list of all elements of an {@link ArraySet} to search it faster than binary search.
+ * Views of the set share it and clamp the result to their range.
+ */
+interface LookupIndex<E> {
+    /**
+     * Returns index of the least element greater than or equal to {@code e} in the sorted list, or its size
+     */
+    int ceilingIndex(E e);
+}
@@ -0,0 +1,335 @@
+package ru.ifmo.rain.badyaev.arrayset;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Immutable {@link NavigableSet} of longs in natural order, read from a file of sorted keys mapped into memory.
+ * Opening maps the file without reading it, keys are paged in by the OS on access and never copied to the heap,
+ * so sets may be larger than the heap. Files larger than 2 GB are mapped by segments of 1 GB.
+ * Views share the mapping like in {@link LongArraySet}, primitive methods like {@link #floorLong} do not box.
+ * Mapping is released when the set becomes unreachable.
+ * <p>
+ * File format: int magic, int version, long number of keys, then keys in ascending order, all little-endian.
+ */
+public class MappedLongArraySet extends AbstractSet<Long> implements NavigableSet<Long> {
+
+    private static final int MAGIC = 0x4D4C4153;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int SEGMENT_SHIFT = 27;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final LongBuffer[] segments;
+    private final IndexRange range;
+    private final String UNSUPPORTED_OPERATION_MESSAGE = "Not applicable for immutable object";
+
+    private MappedLongArraySet(LongBuffer[] segments, IndexRange range) {
+        this.segments = segments;
+        this.range = range;
+    }
+
+    /**
+     * Writes keys in ascending order to the file, equal neighbours are merged
+     *
+     * @return number of written keys
+     * @throws IllegalArgumentException if keys are not sorted
+     */
+    public static long write(Path file, PrimitiveIterator.OfLong sorted) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(0);
+
+            long count = 0;
+            long previous = 0;
+            while (sorted.hasNext()) {
+                long key = sorted.nextLong();
+                if (count > 0 && key <= previous) {
+                    if (key < previous) {
+                        throw new IllegalArgumentException("Keys are not sorted");
+                    }
+                    continue;
+                }
+                if (!buffer.hasRemaining()) {
+                    writeFully(channel, buffer);
+                }
+                buffer.putLong(key);
+                previous = key;
+                count++;
+            }
+            writeFully(channel, buffer);
+
+            buffer.putLong(count);
+            buffer.flip();
+            channel.write(buffer, Integer.BYTES * 2);
+            return count;
+        }
+    }
+
+    public static long write(Path file, long... sorted) throws IOException {
+        return write(file, Arrays.stream(sorted).iterator());
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Maps the file written by {@link #write}
+     *
+     * @throws IOException if the file cannot be read or has invalid format
+     */
+    public static MappedLongArraySet open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a key file: " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a key file: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported key file version " + version + ": " + file);
+            }
+            long count = header.getLong();
+            if (count < 0 || count > (channel.size() - HEADER_SIZE) / Long.BYTES) {
+                throw new IOException("Key file is truncated: " + file);
+            }
+
+            LongBuffer[] segments = new LongBuffer[(int) ((count + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long first = (long) i << SEGMENT_SHIFT;
+                long length = Math.min(count - first, 1L << SEGMENT_SHIFT);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * Long.BYTES, length * Long.BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN)
+                        .asLongBuffer();
+            }
+            return new MappedLongArraySet(segments, new IndexRange(0, count, false));
+        }
+    }
+
+    private long key(long index) {
+        return segments[(int) (index >>> SEGMENT_SHIFT)].get((int) (index & SEGMENT_MASK));
+    }
+
+    private IndexRange.Comparison compareWith(long value) {
+        return index -> Long.compare(key(index), value);
+    }
+
+    private long get(long index, String message) {
+        if (!range.contains(index)) {
+            throw new NoSuchElementException(message);
+        }
+        return key(index);
+    }
+
+    /**
+     * Number of keys, which may exceed {@link Integer#MAX_VALUE} unlike {@link #size}
+     */
+    public long longSize() {
+        return range.size();
+    }
+
+    public boolean containsLong(long value) {
+        return range.search(compareWith(value)) >= 0;
+    }
+
+    public long lowerLong(long value) {
+        return get(range.lowerIndex(compareWith(value)), "No lower element");
+    }
+
+    public long floorLong(long value) {
+        return get(range.floorIndex(compareWith(value)), "No floor element");
+    }
+
+    public long ceilingLong(long value) {
+        return get(range.ceilingIndex(compareWith(value)), "No ceiling element");
+    }
+
+    public long higherLong(long value) {
+        return get(range.higherIndex(compareWith(value)), "No higher element");
+    }
+
+    public long firstLong() {
+        return get(range.firstIndex(), "MappedLongArraySet is empty and cannot return first element");
+    }
+
+    public long lastLong() {
+        return get(range.lastIndex(), "MappedLongArraySet is empty and cannot return last element");
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long && containsLong((Long) o);
+    }
+
+    @Override
+    public Long lower(Long e) {
+        return box(range.lowerIndex(compareWith(e)));
+    }
+
+    @Override
+    public Long floor(Long e) {
+        return box(range.floorIndex(compareWith(e)));
+    }
+
+    @Override
+    public Long ceiling(Long e) {
+        return box(range.ceilingIndex(compareWith(e)));
+    }
+
+    @Override
+    public Long higher(Long e) {
+        return box(range.higherIndex(compareWith(e)));
+    }
+
+    private Long box(long index) {
+        return range.contains(index) ? key(index) : null;
+    }
+
+    @Override
+    public Long pollFirst() {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public Long pollLast() {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public boolean add(Long e) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Long> c) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private long index = range.firstIndex();
+
+            @Override
+            public boolean hasNext() {
+                return range.contains(index);
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return key(range.reversed ? index-- : index++);
+            }
+        };
+    }
+
+    @Override
+    public MappedLongArraySet descendingSet() {
+        return new MappedLongArraySet(segments, range.descending());
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    public MappedLongArraySet subSet(long fromElement, boolean fromInclusive, long toElement, boolean toInclusive) {
+        return new MappedLongArraySet(segments, range.subRange(compareWith(fromElement), fromInclusive,
+                compareWith(toElement), toInclusive, Long.compare(fromElement, toElement)));
+    }
+
+    public MappedLongArraySet headSet(long toElement, boolean inclusive) {
+        return new MappedLongArraySet(segments, range.headRange(compareWith(toElement), inclusive));
+    }
+
+    public MappedLongArraySet tailSet(long fromElement, boolean inclusive) {
+        return new MappedLongArraySet(segments, range.tailRange(compareWith(fromElement), inclusive));
+    }
+
+    @Override
+    public MappedLongArraySet subSet(Long fromElement, boolean fromInclusive, Long toElement, boolean toInclusive) {
+        return subSet((long) fromElement, fromInclusive, (long) toElement, toInclusive);
+    }
+
+    @Override
+    public MappedLongArraySet headSet(Long toElement, boolean inclusive) {
+        return headSet((long) toElement, inclusive);
+    }
+
+    @Override
+    public MappedLongArraySet tailSet(Long fromElement, boolean inclusive) {
+        return tailSet((long) fromElement, inclusive);
+    }
+
+    @Override
+    public Comparator<? super Long> comparator() {
+        return range.reversed ? Collections.reverseOrder() : null;
+    }
+
+    @Override
+    public MappedLongArraySet subSet(Long fromElement, Long toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public MappedLongArraySet headSet(Long toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public MappedLongArraySet tailSet(Long fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Long first() {
+        return firstLong();
+    }
+
+    @Override
+    public Long last() {
+        return lastLong();
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(longSize(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return range.isEmpty();
+    }
+}
@@ -0,0 +1,351 @@
+package ru.ifmo.rain.badyaev.arrayset;
+
+import java.util.*;
+
+/**
+ * Mutable companion of {@link ArraySet}: sorted array with small sorted buffers of changes, see {@link BufferedSortedArray}.
+ * Searches cost two more binary searches over buffers, iteration merges buffers in one pass,
+ * writes shift only the buffer and are merged into the array in linear batches.
+ * Subsets and descending set are views backed by the same storage, like in {@link TreeSet}.
+ * Not thread-safe, iterators are fail-fast.
+ */
+public class MutableArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+
+    private final BufferedSortedArray<E> storage;
+    // Bounds of the view in ascending order of storage
+    private final boolean fromStart;
+    private final E low;
+    private final boolean lowInclusive;
+    private final boolean toEnd;
+    private final E high;
+    private final boolean highInclusive;
+    private final boolean descending;
+
+    public MutableArraySet() {
+        this(Collections.emptyList(), null);
+    }
+
+    public MutableArraySet(Collection<? extends E> collection) {
+        this(collection, null);
+    }
+
+    public MutableArraySet(Collection<? extends E> collection, Comparator<? super E> comparator) {
+        this(new BufferedSortedArray<>(new ArraySet<E>(collection, comparator).toArray(), comparator),
+                true, null, false, true, null, false, false);
+    }
+
+    private MutableArraySet(BufferedSortedArray<E> storage, boolean fromStart, E low, boolean lowInclusive,
+                            boolean toEnd, E high, boolean highInclusive, boolean descending) {
+        this.storage = storage;
+        this.fromStart = fromStart;
+        this.low = low;
+        this.lowInclusive = lowInclusive;
+        this.toEnd = toEnd;
+        this.high = high;
+        this.highInclusive = highInclusive;
+        this.descending = descending;
+    }
+
+    /**
+     * Merges pending changes into the array. Not needed for correctness, but makes following reads as fast as in {@link ArraySet}
+     */
+    public void compact() {
+        storage.compact();
+    }
+
+    private boolean tooLow(Object e) {
+        if (fromStart) {
+            return false;
+        }
+        int c = storage.compare(e, low);
+        return c < 0 || c == 0 && !lowInclusive;
+    }
+
+    private boolean tooHigh(Object e) {
+        if (toEnd) {
+            return false;
+        }
+        int c = storage.compare(e, high);
+        return c > 0 || c == 0 && !highInclusive;
+    }
+
+    private boolean inRange(Object e) {
+        return !tooLow(e) && !tooHigh(e);
+    }
+
+    private boolean isWhole() {
+        return fromStart && toEnd;
+    }
+
+    private BufferedSortedArray<E>.Cursor lowestCursor() {
+        return fromStart ? storage.cursor(true) : storage.cursor(low, lowInclusive, true);
+    }
+
+    private BufferedSortedArray<E>.Cursor highestCursor() {
+        return toEnd ? storage.cursor(false) : storage.cursor(high, highInclusive, false);
+    }
+
+    private BufferedSortedArray<E>.Cursor cursor(boolean ascending) {
+        return ascending ? lowestCursor() : highestCursor();
+    }
+
+    /**
+     * Least element greater than (or equal to) {@code e} in ascending order of storage, or the greatest less than (or equal to) it
+     */
+    private BufferedSortedArray<E>.Cursor cursor(E e, boolean inclusive, boolean ascending) {
+        if (ascending ? tooLow(e) : tooHigh(e)) {
+            return cursor(ascending);
+        }
+        return storage.cursor(e, inclusive, ascending);
+    }
+
+    private E first(BufferedSortedArray<E>.Cursor cursor) {
+        if (cursor.hasNext()) {
+            E e = cursor.next();
+            if (inRange(e)) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return inRange(o) && storage.contains(o);
+    }
+
+    @Override
+    public E lower(E e) {
+        return first(cursor(e, false, descending));
+    }
+
+    @Override
+    public E floor(E e) {
+        return first(cursor(e, true, descending));
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return first(cursor(e, true, !descending));
+    }
+
+    @Override
+    public E higher(E e) {
+        return first(cursor(e, false, !descending));
+    }
+
+    @Override
+    public E first() {
+        BufferedSortedArray<E>.Cursor cursor = cursor(!descending);
+        if (cursor.hasNext()) {
+            E e = cursor.next();
+            if (inRange(e)) {
+                return e;
+            }
+        }
+        throw new NoSuchElementException("MutableArraySet is empty and cannot return first element");
+    }
+
+    @Override
+    public E last() {
+        return descendingSet().first();
+    }
+
+    @Override
+    public E pollFirst() {
+        Iterator<E> iterator = iterator();
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        E e = iterator.next();
+        iterator.remove();
+        return e;
+    }
+
+    @Override
+    public E pollLast() {
+        return descendingSet().pollFirst();
+    }
+
+    @Override
+    public boolean add(E e) {
+        if (!inRange(e)) {
+            throw new IllegalArgumentException("Element out of range");
+        }
+        return storage.add(e);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return inRange(o) && storage.remove(o);
+    }
+
+    @Override
+    public void clear() {
+        if (isWhole()) {
+            storage.clear();
+        } else {
+            super.clear();
+        }
+    }
+
+    @Override
+    public int size() {
+        if (isWhole()) {
+            return storage.size();
+        }
+        int below = fromStart ? 0 : storage.rank(low, !lowInclusive);
+        int upTo = toEnd ? storage.size() : storage.rank(high, highInclusive);
+        return Math.max(0, upTo - below);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        if (isWhole()) {
+            return storage.size() == 0;
+        }
+        BufferedSortedArray<E>.Cursor cursor = lowestCursor();
+        return !cursor.hasNext() || tooHigh(cursor.next());
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new ViewIterator(!descending);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new ViewIterator(descending);
+    }
+
+    @Override
+    public MutableArraySet<E> descendingSet() {
+        return new MutableArraySet<>(storage, fromStart, low, lowInclusive, toEnd, high, highInclusive, !descending);
+    }
+
+    @Override
+    public MutableArraySet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (descending) {
+            return descendingSet().subSet(toElement, toInclusive, fromElement, fromInclusive).descendingSet();
+        }
+        if (storage.compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        checkBound(fromElement, fromInclusive);
+        checkBound(toElement, toInclusive);
+        return new MutableArraySet<>(storage, false, fromElement, fromInclusive, false, toElement, toInclusive, false);
+    }
+
+    @Override
+    public MutableArraySet<E> headSet(E toElement, boolean inclusive) {
+        checkBound(toElement, inclusive);
+        return descending
+                ? new MutableArraySet<>(storage, false, toElement, inclusive, toEnd, high, highInclusive, true)
+                : new MutableArraySet<>(storage, fromStart, low, lowInclusive, false, toElement, inclusive, false);
+    }
+
+    @Override
+    public MutableArraySet<E> tailSet(E fromElement, boolean inclusive) {
+        checkBound(fromElement, inclusive);
+        return descending
+                ? new MutableArraySet<>(storage, fromStart, low, lowInclusive, false, fromElement, inclusive, true)
+                : new MutableArraySet<>(storage, false, fromElement, inclusive, toEnd, high, highInclusive, false);
+    }
+
+    /**
+     * Bound of a view of this view must not be outside of it, an exclusive bound may be equal to an exclusive bound of this view
+     */
+    private void checkBound(E e, boolean inclusive) {
+        boolean outside = inclusive ? !inRange(e)
+                : !fromStart && storage.compare(e, low) < 0 || !toEnd && storage.compare(e, high) > 0;
+        if (outside) {
+            throw new IllegalArgumentException("Bound out of range");
+        }
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return descending ? Collections.reverseOrder(storage.comparator()) : storage.comparator();
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    /**
+     * Walks storage cursor until the view bound. Removal restarts the cursor after the removed element,
+     * since it may be compacted into a new array.
+     */
+    private class ViewIterator implements Iterator<E> {
+        private final boolean ascending;
+        private BufferedSortedArray<E>.Cursor cursor;
+        private int expectedModCount = storage.modCount;
+        private E next;
+        private boolean hasNext;
+        private E lastReturned;
+        private boolean canRemove;
+
+        ViewIterator(boolean ascending) {
+            this.ascending = ascending;
+            this.cursor = cursor(ascending);
+            advance();
+        }
+
+        private void advance() {
+            hasNext = cursor.hasNext();
+            if (hasNext) {
+                next = cursor.next();
+                hasNext = ascending ? !tooHigh(next) : !tooLow(next);
+            }
+        }
+
+        private void checkModification() {
+            if (storage.modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override
+        public E next() {
+            checkModification();
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            canRemove = true;
+            advance();
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (!canRemove) {
+                throw new IllegalStateException();
+            }
+            checkModification();
+            storage.remove(lastReturned);
+            canRemove = false;
+            expectedModCount = storage.modCount;
+            if (hasNext) {
+                cursor = storage.cursor(next, true, ascending);
+                advance();
+            }
+        }
+    }
+}
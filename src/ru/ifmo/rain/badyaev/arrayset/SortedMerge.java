@@ -0,0 +1,195 @@
+package ru.ifmo.rain.badyaev.arrayset;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Set operations over two sorted lists of distinct elements. Lists of similar size are merged linearly,
+ * when one is much smaller, its elements are searched in the larger one by galloping from the previous position,
+ * so the cost is {@code O(m log(n / m))} comparisons. Large inputs are split by elements of the larger list
+ * into independent ranges which are merged in parallel.
+ */
+class SortedMerge<E> {
+    private static final int GALLOP_RATIO = 16;
+    private static final int PARALLEL_THRESHOLD = 1 << 20;
+    private static final int RANGES_PER_THREAD = 4;
+
+    enum Operation {
+        UNION(true, true, true),
+        INTERSECTION(false, false, true),
+        DIFFERENCE(true, false, false),
+        SYMMETRIC_DIFFERENCE(true, true, false);
+
+        private final boolean onlyFirst;
+        private final boolean onlySecond;
+        private final boolean both;
+
+        Operation(boolean onlyFirst, boolean onlySecond, boolean both) {
+            this.onlyFirst = onlyFirst;
+            this.onlySecond = onlySecond;
+            this.both = both;
+        }
+    }
+
+    private final List<E> first;
+    private final List<E> second;
+    private final Comparator<? super E> comparator;
+    private final Operation operation;
+
+    private SortedMerge(List<E> first, List<E> second, Comparator<? super E> comparator, Operation operation) {
+        this.first = first;
+        this.second = second;
+        this.comparator = comparator;
+        this.operation = operation;
+    }
+
+    /**
+     * Returns sorted elements of the result, of equal elements the one from the first list is taken
+     */
+    static <E> Object[] merge(List<E> first, List<E> second, Comparator<? super E> comparator, Operation operation) {
+        SortedMerge<E> merge = new SortedMerge<>(first, second, comparator, operation);
+        if (first.size() + second.size() < PARALLEL_THRESHOLD) {
+            return merge.merge(0, first.size(), 0, second.size());
+        }
+        return merge.parallel(ForkJoinPool.getCommonPoolParallelism() * RANGES_PER_THREAD);
+    }
+
+    private Object[] parallel(int ranges) {
+        boolean firstLarger = first.size() >= second.size();
+        List<E> larger = firstLarger ? first : second;
+        List<E> smaller = firstLarger ? second : first;
+
+        int[] largerSplits = new int[ranges + 1];
+        int[] smallerSplits = new int[ranges + 1];
+        for (int i = 1; i <= ranges; i++) {
+            largerSplits[i] = (int) ((long) i * larger.size() / ranges);
+            smallerSplits[i] = i == ranges ? smaller.size()
+                    : gallop(smaller, smallerSplits[i - 1], smaller.size(), larger.get(largerSplits[i]));
+        }
+        int[] firstSplits = firstLarger ? largerSplits : smallerSplits;
+        int[] secondSplits = firstLarger ? smallerSplits : largerSplits;
+
+        Object[][] parts = IntStream.range(0, ranges).parallel()
+                .mapToObj(i -> merge(firstSplits[i], firstSplits[i + 1], secondSplits[i], secondSplits[i + 1]))
+                .toArray(Object[][]::new);
+        Object[] result = new Object[Arrays.stream(parts).mapToInt(part -> part.length).sum()];
+        int size = 0;
+        for (Object[] part : parts) {
+            System.arraycopy(part, 0, result, size, part.length);
+            size += part.length;
+        }
+        return result;
+    }
+
+    private Object[] merge(int firstFrom, int firstTo, int secondFrom, int secondTo) {
+        int firstSize = firstTo - firstFrom;
+        int secondSize = secondTo - secondFrom;
+        Object[] result = new Object[(operation.onlyFirst ? firstSize : 0) + (operation.onlySecond ? secondSize : 0)
+                + (operation.both && !operation.onlyFirst && !operation.onlySecond ? Math.min(firstSize, secondSize) : 0)];
+
+        int size;
+        if ((long) firstSize * GALLOP_RATIO < secondSize) {
+            size = gallopMerge(result, first, firstFrom, firstTo, second, secondFrom, secondTo, true);
+        } else if ((long) secondSize * GALLOP_RATIO < firstSize) {
+            size = gallopMerge(result, second, secondFrom, secondTo, first, firstFrom, firstTo, false);
+        } else {
+            size = linearMerge(result, firstFrom, firstTo, secondFrom, secondTo);
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    private int linearMerge(Object[] result, int i, int firstTo, int j, int secondTo) {
+        int size = 0;
+        while (i < firstTo && j < secondTo) {
+            E a = first.get(i);
+            E b = second.get(j);
+            int c = compare(a, b);
+            if (c < 0) {
+                if (operation.onlyFirst) {
+                    result[size++] = a;
+                }
+                i++;
+            } else if (c > 0) {
+                if (operation.onlySecond) {
+                    result[size++] = b;
+                }
+                j++;
+            } else {
+                if (operation.both) {
+                    result[size++] = a;
+                }
+                i++;
+                j++;
+            }
+        }
+        size = copy(result, size, first, i, firstTo, operation.onlyFirst);
+        return copy(result, size, second, j, secondTo, operation.onlySecond);
+    }
+
+    /**
+     * Looks up each element of the small list in the large one, copying skipped runs of the large list if they are kept
+     */
+    private int gallopMerge(Object[] result, List<E> small, int smallFrom, int smallTo, List<E> large, int largeFrom, int largeTo,
+                            boolean smallIsFirst) {
+        boolean onlySmall = smallIsFirst ? operation.onlyFirst : operation.onlySecond;
+        boolean onlyLarge = smallIsFirst ? operation.onlySecond : operation.onlyFirst;
+        int size = 0;
+        int position = largeFrom;
+        for (int i = smallFrom; i < smallTo; i++) {
+            E e = small.get(i);
+            int next = gallop(large, position, largeTo, e);
+            size = copy(result, size, large, position, next, onlyLarge);
+            if (next < largeTo && compare(large.get(next), e) == 0) {
+                if (operation.both) {
+                    result[size++] = smallIsFirst ? e : large.get(next);
+                }
+                next++;
+            } else if (onlySmall) {
+                result[size++] = e;
+            }
+            position = next;
+        }
+        return copy(result, size, large, position, largeTo, onlyLarge);
+    }
+
+    private static <E> int copy(Object[] result, int size, List<E> list, int from, int to, boolean keep) {
+        if (keep) {
+            for (int i = from; i < to; i++) {
+                result[size++] = list.get(i);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Index of the least element not less than {@code e} in {@code [from, to)}, found by doubling steps from {@code from}
+     * and binary search in the last step
+     */
+    private int gallop(List<E> list, int from, int to, E e) {
+        int low = from;
+        int high = from;
+        long step = 1;
+        while (high < to && compare(list.get(high), e) < 0) {
+            low = high + 1;
+            high = (int) Math.min(low + step, to);
+            step <<= 1;
+        }
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(list.get(middle), e) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        return comparator == null ? ((Comparable<? super E>) a).compareTo(b) : comparator.compare(a, b);
+    }
+}
@@ -0,0 +1,240 @@
+package ru.ifmo.rain.badyaev.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable {@link NavigableSet} of strings in natural order, stored front-coded in a single byte array,
+ * see {@link FrontCodedStrings}. Sets of paths and URLs with long shared prefixes take several times less memory
+ * than {@link ArraySet}, at the cost of decoding up to a block of strings per returned element, see {@link StringArraySetBenchmark}.
+ * Views share the encoded strings: subsets narrow the index range and descending view mirrors indices, see {@link IndexRange}.
+ */
+public class StringArraySet extends AbstractSet<String> implements NavigableSet<String> {
+
+    private final FrontCodedStrings strings;
+    private final IndexRange range;
+    private final String UNSUPPORTED_OPERATION_MESSAGE = "Not applicable for immutable object";
+
+    public StringArraySet() {
+        this(Collections.emptyList());
+    }
+
+    public StringArraySet(Collection<? extends String> collection) {
+        this(FrontCodedStrings.encode(new ArraySet<>(collection).toArray(new String[0])));
+    }
+
+    private StringArraySet(FrontCodedStrings strings) {
+        this(strings, new IndexRange(0, strings.size(), false));
+    }
+
+    private StringArraySet(FrontCodedStrings strings, IndexRange range) {
+        this.strings = strings;
+        this.range = range;
+    }
+
+    /**
+     * Creates set over the encoded strings without copying
+     */
+    static StringArraySet of(FrontCodedStrings strings) {
+        return new StringArraySet(strings);
+    }
+
+    /**
+     * Encoded strings of this set in ascending order, shared if the set is not a subset
+     */
+    FrontCodedStrings encoded() {
+        if (range.size() == strings.size()) {
+            return strings;
+        }
+        String[] ascending = new String[size()];
+        Iterator<String> iterator = range.reversed ? descendingIterator() : iterator();
+        for (int i = 0; i < ascending.length; i++) {
+            ascending[i] = iterator.next();
+        }
+        return FrontCodedStrings.encode(ascending);
+    }
+
+    /**
+     * Bytes used by encoded strings of the whole set, views included
+     */
+    public long footprint() {
+        return strings.footprint();
+    }
+
+    /**
+     * Searches the whole set once with the block index of {@link FrontCodedStrings}: a string at an index compares
+     * with the value like the index with the position of the value, so the range searches without decoding strings
+     */
+    private IndexRange.Comparison compareWith(String value) {
+        int position = strings.search(value);
+        if (position >= 0) {
+            return index -> Long.compare(index, position);
+        }
+        int insertion = -(position + 1);
+        return index -> index < insertion ? -1 : 1;
+    }
+
+    private String get(long index) {
+        return range.contains(index) ? strings.get((int) index) : null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof String && range.search(compareWith((String) o)) >= 0;
+    }
+
+    @Override
+    public String lower(String e) {
+        return get(range.lowerIndex(compareWith(e)));
+    }
+
+    @Override
+    public String floor(String e) {
+        return get(range.floorIndex(compareWith(e)));
+    }
+
+    @Override
+    public String ceiling(String e) {
+        return get(range.ceilingIndex(compareWith(e)));
+    }
+
+    @Override
+    public String higher(String e) {
+        return get(range.higherIndex(compareWith(e)));
+    }
+
+    @Override
+    public String pollFirst() {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public String pollLast() {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public boolean add(String e) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends String> c) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE);
+    }
+
+    /**
+     * Decodes a block at a time, so iteration costs the same as decoding the set once in either direction
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<>() {
+            private int index = (int) range.firstIndex();
+            private final String[] block = new String[FrontCodedStrings.BLOCK_SIZE];
+            private int decodedBlock = -1;
+
+            @Override
+            public boolean hasNext() {
+                return range.contains(index);
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (index / FrontCodedStrings.BLOCK_SIZE != decodedBlock) {
+                    decodedBlock = index / FrontCodedStrings.BLOCK_SIZE;
+                    strings.decodeBlock(decodedBlock, block);
+                }
+                return block[(range.reversed ? index-- : index++) % FrontCodedStrings.BLOCK_SIZE];
+            }
+        };
+    }
+
+    @Override
+    public StringArraySet descendingSet() {
+        return new StringArraySet(strings, range.descending());
+    }
+
+    @Override
+    public Iterator<String> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    @Override
+    public StringArraySet subSet(String fromElement, boolean fromInclusive, String toElement, boolean toInclusive) {
+        return new StringArraySet(strings, range.subRange(compareWith(fromElement), fromInclusive,
+                compareWith(toElement), toInclusive, fromElement.compareTo(toElement)));
+    }
+
+    @Override
+    public StringArraySet headSet(String toElement, boolean inclusive) {
+        return new StringArraySet(strings, range.headRange(compareWith(toElement), inclusive));
+    }
+
+    @Override
+    public StringArraySet tailSet(String fromElement, boolean inclusive) {
+        return new StringArraySet(strings, range.tailRange(compareWith(fromElement), inclusive));
+    }
+
+    @Override
+    public Comparator<? super String> comparator() {
+        return range.reversed ? Collections.reverseOrder() : null;
+    }
+
+    @Override
+    public StringArraySet subSet(String fromElement, String toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public StringArraySet headSet(String toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public StringArraySet tailSet(String fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public String first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("StringArraySet is empty and cannot return first element");
+        }
+        return get(range.firstIndex());
+    }
+
+    @Override
+    public String last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("StringArraySet is empty and cannot return last element");
+        }
+        return get(range.lastIndex());
+    }
+
+    @Override
+    public int size() {
+        return (int) range.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return range.isEmpty();
+    }
+}
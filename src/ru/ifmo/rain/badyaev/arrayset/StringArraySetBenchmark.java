@@ -0,0 +1,119 @@
+package ru.ifmo.rain.badyaev.arrayset;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Compares heap footprint and lookup latency of {@link StringArraySet} and {@link ArraySet} of URL-like strings.
+ * Footprint is the growth of used heap after garbage collection, strings included.
+ * Usage: StringArraySetBenchmark [size...]
+ */
+public class StringArraySetBenchmark {
+    private static final int WARMUP = 3;
+    private static final int ITERATIONS = 5;
+    private static final int QUERIES = 1 << 18;
+    private static final int HOSTS = 50;
+    private static final int WORDS = 1000;
+
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0 ? parseSizes(args) : new int[]{100_000, 1_000_000};
+        for (int size : sizes) {
+            List<String> queries = strings(QUERIES / 2, size + 1);
+            queries.addAll(strings(size, size).subList(0, Math.min(size, QUERIES / 2)));
+
+            benchmark("ArraySet", size, queries, ArraySet::new);
+            benchmark("StringArraySet", size, queries, StringArraySet::new);
+        }
+    }
+
+    private static void benchmark(String name, int size, List<String> queries, Function<List<String>, NavigableSet<String>> factory) {
+        long before = usedHeap();
+        NavigableSet<String> set = factory.apply(strings(size, size));
+        long footprint = usedHeap() - before;
+
+        System.out.println(String.format("%9d %-15s %7.1f MB %5.1f bytes per element, contains %6.1f ns, ceiling %6.1f ns, iteration %5.1f ns",
+                size, name, footprint / 1e6, (double) footprint / size,
+                measure(set, queries, NavigableSet::contains), measure(set, queries, NavigableSet::ceiling),
+                iteration(set)));
+        Reference.reachabilityFence(set);
+    }
+
+    /**
+     * Random paths on a few hosts built from a dictionary, so neighbours share long prefixes like real URLs
+     */
+    private static List<String> strings(int size, long seed) {
+        Random random = new Random(seed);
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            StringBuilder url = new StringBuilder("https://host").append(random.nextInt(HOSTS)).append(".example.com");
+            int segments = 2 + random.nextInt(3);
+            for (int j = 0; j < segments; j++) {
+                url.append("/word").append(random.nextInt(WORDS));
+            }
+            strings.add(url.append("/").append(random.nextInt(1_000_000)).toString());
+        }
+        return strings;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static double measure(NavigableSet<String> set, List<String> queries, BiFunction<NavigableSet<String>, String, Object> operation) {
+        double best = Double.MAX_VALUE;
+        int found = 0;
+        for (int iteration = 0; iteration < WARMUP + ITERATIONS; iteration++) {
+            long start = System.nanoTime();
+            for (String query : queries) {
+                Object result = operation.apply(set, query);
+                if (result != null && result != Boolean.FALSE) {
+                    found++;
+                }
+            }
+            double nanosPerQuery = (double) (System.nanoTime() - start) / queries.size();
+            if (iteration >= WARMUP) {
+                best = Math.min(best, nanosPerQuery);
+            }
+        }
+        if (found < 0) {
+            throw new AssertionError();
+        }
+        return best;
+    }
+
+    private static double iteration(NavigableSet<String> set) {
+        double best = Double.MAX_VALUE;
+        int length = 0;
+        for (int iteration = 0; iteration < WARMUP + ITERATIONS; iteration++) {
+            long start = System.nanoTime();
+            for (String s : set) {
+                length += s.length();
+            }
+            double nanosPerElement = (double) (System.nanoTime() - start) / set.size();
+            if (iteration >= WARMUP) {
+                best = Math.min(best, nanosPerElement);
+            }
+        }
+        if (length < 0) {
+            throw new AssertionError();
+        }
+        return best;
+    }
+
+    private static int[] parseSizes(String[] args) {
+        int[] sizes = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        return sizes;
+    }
+}
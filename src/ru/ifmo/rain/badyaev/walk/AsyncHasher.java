@@ -0,0 +1,117 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Hashes files with {@link AsynchronousFileChannel}, keeping up to {@code queueDepth} files in flight.
+ * Every file in flight owns one pooled direct buffer, so memory is bounded by queue depth times buffer size.
+ * Hash is updated in completion handlers, which run on the given executor.
+ */
+class AsyncHasher {
+    private final HashAlgorithm algorithm;
+    private final ExecutorService executor;
+    private final BlockingQueue<ByteBuffer> buffers;
+    private final WalkMetrics metrics;
+
+    AsyncHasher(HashAlgorithm algorithm, ExecutorService executor, int queueDepth, int bufferSize, WalkMetrics metrics) {
+        this.algorithm = algorithm;
+        this.executor = executor;
+        this.buffers = new ArrayBlockingQueue<>(queueDepth);
+        for (int i = 0; i < queueDepth; i++) {
+            buffers.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+        this.metrics = metrics;
+        metrics.queue("async", () -> queueDepth - buffers.size());
+    }
+
+    /**
+     * Starts hashing of the file, blocks while all buffers are in use
+     */
+    CompletableFuture<byte[]> hash(Path file) {
+        ByteBuffer buffer;
+        try {
+            buffer = buffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        AsynchronousFileChannel channel;
+        try {
+            channel = AsynchronousFileChannel.open(file, Set.of(StandardOpenOption.READ), executor);
+        } catch (IOException | RuntimeException e) {
+            buffers.add(buffer);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        new Reader(channel, buffer, algorithm.newHasher(), result).read(0);
+        return result;
+    }
+
+    private class Reader implements CompletionHandler<Integer, Long> {
+        private final AsynchronousFileChannel channel;
+        private final ByteBuffer buffer;
+        private final HashAlgorithm.Hasher hasher;
+        private final CompletableFuture<byte[]> result;
+
+        Reader(AsynchronousFileChannel channel, ByteBuffer buffer, HashAlgorithm.Hasher hasher, CompletableFuture<byte[]> result) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.hasher = hasher;
+            this.result = result;
+        }
+
+        void read(long position) {
+            buffer.clear();
+            try {
+                channel.read(buffer, position, position, this);
+            } catch (RuntimeException e) {
+                failed(e, position);
+            }
+        }
+
+        @Override
+        public void completed(Integer bytes, Long position) {
+            if (bytes == -1) {
+                release();
+                result.complete(hasher.digest());
+                return;
+            }
+
+            try {
+                buffer.flip();
+                metrics.bytes(bytes);
+                hasher.update(buffer);
+            } catch (RuntimeException e) {
+                failed(e, position);
+                return;
+            }
+            read(position + bytes);
+        }
+
+        @Override
+        public void failed(Throwable e, Long position) {
+            release();
+            result.completeExceptionally(e);
+        }
+
+        private void release() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            buffers.add(buffer);
+        }
+    }
+}
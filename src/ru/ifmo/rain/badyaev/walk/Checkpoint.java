@@ -0,0 +1,173 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Position of a walk which is periodically saved next to the output file.
+ * Position is the number of finished input lines, the number of output entries of the current line
+ * and the length of output which holds exactly these entries.
+ * Entries of a line come in traversal order, so their count identifies the traversal frontier
+ * as long as the tree does not change between runs.
+ */
+class Checkpoint {
+    private static final int MAGIC = 0x52574350;
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final String input;
+    private final String algorithm;
+    private final long period;
+    private long nextSave;
+
+    private long resumeLine;
+    private long resumeEntries;
+    private long resumeOffset;
+
+    private long line;
+    private long entries;
+    private FileChannel output;
+
+    private Checkpoint(Path file, String input, String algorithm, int periodSeconds) {
+        this.file = file;
+        this.input = input;
+        this.algorithm = algorithm;
+        this.period = periodSeconds > 0 ? TimeUnit.SECONDS.toNanos(periodSeconds) : Long.MAX_VALUE;
+        this.nextSave = periodSeconds > 0 ? System.nanoTime() + period : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns {@code null} if walk neither saves nor resumes checkpoints
+     */
+    static Checkpoint create(WalkOptions options, String algorithm) {
+        if (options.checkpointSeconds == 0 && !options.resume) {
+            return null;
+        }
+
+        Checkpoint checkpoint = new Checkpoint(Paths.get(options.output + ".checkpoint"),
+                options.input, algorithm, options.checkpointSeconds);
+        if (options.resume) {
+            checkpoint.load();
+        }
+        return checkpoint;
+    }
+
+    private void load() {
+        if (!Files.exists(file)) {
+            System.err.println("No checkpoint found, starting from the beginning: " + file);
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("unknown checkpoint format");
+            }
+            if (!in.readUTF().equals(input)) {
+                throw new IOException("checkpoint was made for another input file");
+            }
+            if (!in.readUTF().equals(algorithm)) {
+                throw new IOException("checkpoint was made with another hash algorithm");
+            }
+            resumeLine = in.readLong();
+            resumeEntries = in.readLong();
+            resumeOffset = in.readLong();
+        } catch (IOException e) {
+            System.err.println("Ignoring broken checkpoint: " + file + ", " + e.getMessage());
+            resumeLine = resumeEntries = resumeOffset = 0;
+        }
+    }
+
+    /**
+     * Opens output file and cuts it to the checkpointed length, dropping lines written after the checkpoint
+     */
+    FileChannel open(String outputName) throws IOException {
+        if (resumeOffset > 0) {
+            output = new FileOutputStream(outputName, true).getChannel();
+            if (output.size() >= resumeOffset) {
+                output.truncate(resumeOffset);
+                return output;
+            }
+            System.err.println("Output file is shorter than checkpoint, starting from the beginning: " + outputName);
+            output.close();
+            resumeLine = resumeEntries = resumeOffset = 0;
+        }
+        output = new FileOutputStream(outputName).getChannel();
+        return output;
+    }
+
+    boolean skipLine() {
+        return line < resumeLine;
+    }
+
+    void nextLine() {
+        line++;
+        entries = 0;
+    }
+
+    /**
+     * Counts the next output entry, returns {@code true} if it was written before the checkpoint
+     */
+    boolean skipEntry() {
+        boolean skip = line == resumeLine && entries < resumeEntries;
+        entries++;
+        return skip;
+    }
+
+    /**
+     * Saves position if period elapsed. All counted entries are written out before saving.
+     */
+    void tick(OrderedHashWriter writer, HashIndex index) {
+        if (System.nanoTime() < nextSave) {
+            return;
+        }
+
+        try {
+            save(writer, index);
+        } catch (IOException e) {
+            System.err.println("Error while saving checkpoint: " + file + ", " + e.getMessage());
+        }
+        nextSave = System.nanoTime() + period;
+    }
+
+    private void save(OrderedHashWriter writer, HashIndex index) throws IOException {
+        writer.flush();
+        output.force(false);
+        if (index != null) {
+            index.save();
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(input);
+            out.writeUTF(algorithm);
+            out.writeLong(line);
+            out.writeLong(entries);
+            out.writeLong(output.position());
+        }
+
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    boolean resumed() {
+        return resumeLine > 0 || resumeEntries > 0;
+    }
+
+    /**
+     * Removes checkpoint of a finished walk
+     */
+    void finish() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Can't delete checkpoint: " + file + ", " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Finds clusters of files with equal contents.
+ * Only files sharing their size with another file are read: first a prefix hash is computed,
+ * and files which still collide are hashed in full. Files with equal size and hash are then compared byte by byte,
+ * so hash collisions never merge clusters.
+ * Clusters are written as usual hash lines in order of their first file and separated by empty lines.
+ */
+class Deduplicator {
+    static final int PREFIX_SIZE = 4096;
+    private static final int COMPARE_BUFFER_SIZE = 1 << 16;
+
+    private final FileHasher hasher;
+    private final HashIndex index;
+    private final ExecutorService executor;
+    private final WalkMetrics metrics;
+    private final List<FileEntry> files;
+
+    private interface Hash {
+        byte[] apply(Path path) throws IOException;
+    }
+
+    Deduplicator(FileHasher hasher, HashIndex index, ExecutorService executor, WalkMetrics metrics) {
+        this.hasher = hasher;
+        this.index = index;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.files = new ArrayList<>();
+    }
+
+    void add(Path path, String fileName) {
+        try {
+            files.add(new FileEntry(files.size(), path, fileName, Files.size(path)));
+        } catch (IOException e) {
+            metrics.error(e);
+            System.err.println("Error while reading: " + fileName + ", " + e.getMessage());
+        }
+    }
+
+    void write(OrderedHashWriter writer) {
+        List<List<FileEntry>> sameSize = groups(files, entry -> entry.size);
+        List<List<FileEntry>> clusters = new ArrayList<>();
+
+        List<List<FileEntry>> hashed = new ArrayList<>();
+        List<FileEntry> prefixCandidates = new ArrayList<>();
+        for (List<FileEntry> group : sameSize) {
+            if (group.get(0).size == 0) {
+                byte[] emptyDigest = hasher.algorithm().newHasher().digest();
+                group.forEach(entry -> entry.digest = emptyDigest);
+                clusters.add(group);
+            } else {
+                prefixCandidates.addAll(group);
+            }
+        }
+        hashAll(prefixCandidates, path -> hasher.hashPrefix(path, PREFIX_SIZE));
+
+        List<FileEntry> fullCandidates = new ArrayList<>();
+        for (List<FileEntry> group : groups(prefixCandidates, Deduplicator::contentKey)) {
+            if (group.get(0).size <= PREFIX_SIZE) {
+                hashed.add(group);
+            } else {
+                fullCandidates.addAll(group);
+            }
+        }
+        hashAll(fullCandidates, path -> index != null ? index.hash(path) : hasher.hash(path));
+        hashed.addAll(groups(fullCandidates, Deduplicator::contentKey));
+        for (List<FileEntry> group : hashed) {
+            clusters.addAll(compareContents(group));
+        }
+
+        clusters.sort(Comparator.comparingInt(cluster -> cluster.get(0).order));
+        for (int i = 0; i < clusters.size(); i++) {
+            if (i > 0) {
+                writer.separate();
+            }
+            for (FileEntry entry : clusters.get(i)) {
+                writer.write(entry.fileName, entry.digest);
+            }
+        }
+    }
+
+    /**
+     * Splits entries into groups of at least two entries with equal non-null keys, preserving entries order
+     */
+    private static List<List<FileEntry>> groups(List<FileEntry> entries, Function<FileEntry, Object> key) {
+        Map<Object, List<FileEntry>> groups = new LinkedHashMap<>();
+        for (FileEntry entry : entries) {
+            Object entryKey = key.apply(entry);
+            if (entryKey != null) {
+                groups.computeIfAbsent(entryKey, k -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        List<List<FileEntry>> result = new ArrayList<>();
+        for (List<FileEntry> group : groups.values()) {
+            if (group.size() > 1) {
+                result.add(group);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Splits a group of files with equal size and hash into clusters of at least two files with equal bytes,
+     * preserving entries order. Every file is compared with the first file of each cluster found so far.
+     */
+    private List<List<FileEntry>> compareContents(List<FileEntry> group) {
+        List<List<FileEntry>> clusters = new ArrayList<>();
+        for (FileEntry entry : group) {
+            List<FileEntry> cluster = null;
+            try {
+                for (List<FileEntry> candidate : clusters) {
+                    if (sameContents(candidate.get(0).path, entry.path)) {
+                        cluster = candidate;
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                metrics.error(e);
+                System.err.println("Error while comparing: " + entry.fileName + ", " + e.getMessage());
+                continue;
+            }
+            if (cluster == null) {
+                cluster = new ArrayList<>();
+                clusters.add(cluster);
+            }
+            cluster.add(entry);
+        }
+        clusters.removeIf(cluster -> cluster.size() < 2);
+        return clusters;
+    }
+
+    private static boolean sameContents(Path first, Path second) throws IOException {
+        try (InputStream firstStream = Files.newInputStream(first); InputStream secondStream = Files.newInputStream(second)) {
+            byte[] firstBuffer = new byte[COMPARE_BUFFER_SIZE];
+            byte[] secondBuffer = new byte[COMPARE_BUFFER_SIZE];
+            while (true) {
+                int read = firstStream.readNBytes(firstBuffer, 0, COMPARE_BUFFER_SIZE);
+                if (read != secondStream.readNBytes(secondBuffer, 0, COMPARE_BUFFER_SIZE)
+                        || !Arrays.equals(firstBuffer, 0, read, secondBuffer, 0, read)) {
+                    return false;
+                }
+                if (read < COMPARE_BUFFER_SIZE) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private static Object contentKey(FileEntry entry) {
+        return entry.digest != null ? List.of(entry.size, ByteBuffer.wrap(entry.digest)) : null;
+    }
+
+    private void hashAll(List<FileEntry> entries, Hash hash) {
+        if (executor == null) {
+            for (FileEntry entry : entries) {
+                entry.digest = hashOrNull(entry, hash);
+            }
+            return;
+        }
+
+        List<Future<byte[]>> futures = new ArrayList<>(entries.size());
+        for (FileEntry entry : entries) {
+            futures.add(executor.submit(() -> hashOrNull(entry, hash)));
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            try {
+                entries.get(i).digest = futures.get(i).get();
+            } catch (ExecutionException e) {
+                metrics.error(e);
+                entries.get(i).digest = null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private byte[] hashOrNull(FileEntry entry, Hash hash) {
+        try {
+            return hash.apply(entry.path);
+        } catch (IOException e) {
+            metrics.error(e);
+            System.err.println("Error while hashing: " + entry.fileName + ", " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static class FileEntry {
+        final int order;
+        final Path path;
+        final String fileName;
+        final long size;
+        byte[] digest;
+
+        FileEntry(int order, Path path, String fileName, long size) {
+            this.order = order;
+            this.path = path;
+            this.fileName = fileName;
+            this.size = size;
+        }
+    }
+}
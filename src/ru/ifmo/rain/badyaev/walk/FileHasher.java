@@ -0,0 +1,130 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Feeds file contents to a {@link HashAlgorithm}.
+ * Small files are read through a per-thread direct buffer, large ones are memory-mapped chunk by chunk,
+ * so neither path copies file contents into the Java heap. Threads which live for a single file, such as virtual threads,
+ * should be lent a pooled buffer with {@link #withBuffer}, otherwise every file allocates a buffer of its own.
+ * With a {@link TreeHasher}, files larger than its chunk are tree-hashed instead.
+ */
+class FileHasher {
+    static final long MAP_THRESHOLD = 1 << 24;
+    private static final long MAP_CHUNK = 1 << 26;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int STREAM_BUFFER_SIZE = 4096;
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(FileHasher::newBuffer);
+
+    private final HashAlgorithm algorithm;
+    private final WalkMetrics metrics;
+    private final TreeHasher treeHasher;
+
+    FileHasher(HashAlgorithm algorithm) {
+        this(algorithm, new WalkMetrics(), null);
+    }
+
+    FileHasher(HashAlgorithm algorithm, WalkMetrics metrics, TreeHasher treeHasher) {
+        this.algorithm = algorithm;
+        this.metrics = metrics;
+        this.treeHasher = treeHasher;
+    }
+
+    static ByteBuffer newBuffer() {
+        return ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /**
+     * Runs the task in the current thread with {@code buffer} used instead of the buffer of the thread
+     */
+    static void withBuffer(ByteBuffer buffer, Runnable task) {
+        BUFFERS.set(buffer);
+        try {
+            task.run();
+        } finally {
+            BUFFERS.remove();
+        }
+    }
+
+    HashAlgorithm algorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Name of the produced hashes, differs for tree hashes with different chunks
+     */
+    String name() {
+        return treeHasher == null ? algorithm.name() : algorithm.name() + "/tree" + treeHasher.chunkSize();
+    }
+
+    byte[] hash(Path file) throws IOException {
+        HashAlgorithm.Hasher hasher = algorithm.newHasher();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (treeHasher != null && size > treeHasher.chunkSize()) {
+                metrics.bytes(size);
+                return treeHasher.hash(channel, size);
+            } else if (size >= MAP_THRESHOLD) {
+                hashMapped(channel, hasher);
+            } else {
+                hashChannel(channel, hasher);
+            }
+            metrics.bytes(size);
+        }
+        return hasher.digest();
+    }
+
+    /**
+     * Hashes at most {@code length} first bytes of the file, {@code length} should not exceed buffer size
+     */
+    byte[] hashPrefix(Path file, int length) throws IOException {
+        HashAlgorithm.Hasher hasher = algorithm.newHasher();
+        ByteBuffer buffer = BUFFERS.get();
+        buffer.clear().limit(length);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // keep reading until prefix is complete or file ends
+            }
+        }
+        buffer.flip();
+        metrics.bytes(buffer.remaining());
+        hasher.update(buffer);
+        return hasher.digest();
+    }
+
+    static void hashStream(Path file, HashAlgorithm.Hasher hasher) throws IOException {
+        try (InputStream is = Files.newInputStream(file)) {
+            byte[] buf = new byte[STREAM_BUFFER_SIZE];
+            int size;
+            while ((size = is.read(buf)) != -1) {
+                hasher.update(ByteBuffer.wrap(buf, 0, size));
+            }
+        }
+    }
+
+    static void hashChannel(FileChannel channel, HashAlgorithm.Hasher hasher) throws IOException {
+        ByteBuffer buffer = BUFFERS.get();
+        buffer.clear();
+        while (channel.read(buffer) != -1) {
+            buffer.flip();
+            hasher.update(buffer);
+            buffer.clear();
+        }
+    }
+
+    static void hashMapped(FileChannel channel, HashAlgorithm.Hasher hasher) throws IOException {
+        long size = channel.size();
+        for (long position = 0; position < size; position += MAP_CHUNK) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_CHUNK, size - position));
+            hasher.update(buffer);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * FNV-1 32-bit, the original output format of {@link RecursiveWalk}.
+ * Like every FNV hash it consumes a byte per step
+ */
+class Fnv1Hash implements HashAlgorithm {
+    static final int FNV_CONST = 16777619;
+    static final int FNV0 = (int) 2166136261L;
+
+    @Override
+    public String name() {
+        return "fnv1";
+    }
+
+    @Override
+    public int digestLength() {
+        return Integer.BYTES;
+    }
+
+    @Override
+    public Hasher newHasher() {
+        return new Hasher() {
+            private int hash = FNV0;
+
+            @Override
+            public void update(ByteBuffer buffer) {
+                hash = Fnv1Hash.update(hash, buffer);
+            }
+
+            @Override
+            public byte[] digest() {
+                return ByteBuffer.allocate(Integer.BYTES).putInt(hash).array();
+            }
+        };
+    }
+
+    static int update(int hash, ByteBuffer buffer) {
+        int limit = buffer.limit();
+        for (int i = buffer.position(); i < limit; i++) {
+            hash *= FNV_CONST;
+            hash ^= buffer.get(i) & 255;
+        }
+        buffer.position(limit);
+        return hash;
+    }
+}
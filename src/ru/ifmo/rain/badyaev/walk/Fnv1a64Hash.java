@@ -0,0 +1,46 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * FNV-1a 64-bit. Every byte is an xor and a multiplication depending on the previous one,
+ * so the hash can't consume several bytes per step, see {@link XxHash64} for a faster hash
+ */
+class Fnv1a64Hash implements HashAlgorithm {
+    private static final long FNV_CONST = 0x100000001b3L;
+    private static final long FNV0 = 0xcbf29ce484222325L;
+
+    @Override
+    public String name() {
+        return "fnv1a64";
+    }
+
+    @Override
+    public int digestLength() {
+        return Long.BYTES;
+    }
+
+    @Override
+    public Hasher newHasher() {
+        return new Hasher() {
+            private long hash = FNV0;
+
+            @Override
+            public void update(ByteBuffer buffer) {
+                int limit = buffer.limit();
+                long h = hash;
+                for (int i = buffer.position(); i < limit; i++) {
+                    h ^= buffer.get(i) & 255;
+                    h *= FNV_CONST;
+                }
+                hash = h;
+                buffer.position(limit);
+            }
+
+            @Override
+            public byte[] digest() {
+                return ByteBuffer.allocate(Long.BYTES).putLong(hash).array();
+            }
+        };
+    }
+}
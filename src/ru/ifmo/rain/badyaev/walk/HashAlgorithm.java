@@ -0,0 +1,56 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.nio.ByteBuffer;
+import java.util.ServiceLoader;
+
+/**
+ * Hash function used by {@link RecursiveWalk}.
+ * Besides built-in algorithms, implementations are looked up with {@link ServiceLoader}.
+ */
+public interface HashAlgorithm {
+    /**
+     * Name accepted by {@code --hash} option
+     */
+    String name();
+
+    /**
+     * Length of digest in bytes
+     */
+    int digestLength();
+
+    Hasher newHasher();
+
+    /**
+     * Incremental hash computation for a single file
+     */
+    interface Hasher {
+        /**
+         * Consumes all remaining bytes of the buffer
+         */
+        void update(ByteBuffer buffer);
+
+        /**
+         * Returns big-endian digest of {@link #digestLength()} bytes
+         */
+        byte[] digest();
+    }
+
+    static HashAlgorithm defaultAlgorithm() {
+        return new Fnv1Hash();
+    }
+
+    static HashAlgorithm forName(String name) {
+        HashAlgorithm[] builtIn = {new Fnv1Hash(), new Fnv1a64Hash(), new XxHash64(), new Sha256Hash()};
+        for (HashAlgorithm algorithm : builtIn) {
+            if (algorithm.name().equalsIgnoreCase(name)) {
+                return algorithm;
+            }
+        }
+        for (HashAlgorithm algorithm : ServiceLoader.load(HashAlgorithm.class)) {
+            if (algorithm.name().equalsIgnoreCase(name)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unknown hash algorithm: " + name);
+    }
+}
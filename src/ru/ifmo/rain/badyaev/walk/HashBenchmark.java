@@ -0,0 +1,90 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares stream, channel and mapped hashing paths of {@link FileHasher}.
+ * Usage: HashBenchmark [maxSizeMb [algorithm]]
+ */
+public class HashBenchmark {
+    private static final int WARMUP = 3;
+    private static final int ITERATIONS = 5;
+    private static final long MAX_BYTES_PER_SIZE = 1L << 28;
+    // each mapped run holds a mapping until GC, keep their count below vm.max_map_count
+    private static final long MAX_REPEATS = 1024;
+
+    private interface HashPath {
+        void hash(Path file, HashAlgorithm.Hasher hasher) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        long maxSize = (args.length > 0 ? Long.parseLong(args[0]) : 256) << 20;
+        HashAlgorithm algorithm = args.length > 1 ? HashAlgorithm.forName(args[1]) : HashAlgorithm.defaultAlgorithm();
+        Path directory = Files.createTempDirectory("hash-benchmark");
+        try {
+            for (long size = 1 << 12; size <= maxSize; size <<= 4) {
+                Path file = createFile(directory, size);
+                HashAlgorithm.Hasher expectedHasher = algorithm.newHasher();
+                FileHasher.hashStream(file, expectedHasher);
+                byte[] expected = expectedHasher.digest();
+                long repeats = Math.max(1, Math.min(MAX_REPEATS, MAX_BYTES_PER_SIZE / size));
+
+                System.out.printf("%10d bytes: stream %8.1f MB/s, channel %8.1f MB/s, mapped %8.1f MB/s%n", size,
+                        measure(file, size, repeats, algorithm, expected, FileHasher::hashStream),
+                        measure(file, size, repeats, algorithm, expected, (f, hasher) -> {
+                            try (FileChannel channel = FileChannel.open(f, StandardOpenOption.READ)) {
+                                FileHasher.hashChannel(channel, hasher);
+                            }
+                        }),
+                        measure(file, size, repeats, algorithm, expected, (f, hasher) -> {
+                            try (FileChannel channel = FileChannel.open(f, StandardOpenOption.READ)) {
+                                FileHasher.hashMapped(channel, hasher);
+                            }
+                        }));
+                Files.delete(file);
+            }
+        } finally {
+            Files.delete(directory);
+        }
+    }
+
+    private static double measure(Path file, long size, long repeats, HashAlgorithm algorithm, byte[] expected,
+                                  HashPath path) throws IOException {
+        double best = 0;
+        for (int iteration = 0; iteration < WARMUP + ITERATIONS; iteration++) {
+            long start = System.nanoTime();
+            for (long i = 0; i < repeats; i++) {
+                HashAlgorithm.Hasher hasher = algorithm.newHasher();
+                path.hash(file, hasher);
+                if (!Arrays.equals(hasher.digest(), expected)) {
+                    throw new AssertionError("Hash mismatch for " + file);
+                }
+            }
+            double mbPerSecond = (double) size * repeats / (1 << 20) / ((System.nanoTime() - start) / 1e9);
+            if (iteration >= WARMUP) {
+                best = Math.max(best, mbPerSecond);
+            }
+        }
+        return best;
+    }
+
+    private static Path createFile(Path directory, long size) throws IOException {
+        Path file = directory.resolve(Long.toString(size));
+        Random random = new Random(size);
+        byte[] block = new byte[1 << 16];
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (long written = 0; written < size; written += block.length) {
+                random.nextBytes(block);
+                out.write(block, 0, (int) Math.min(block.length, size - written));
+            }
+        }
+        return file;
+    }
+}
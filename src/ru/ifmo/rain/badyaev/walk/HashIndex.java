@@ -0,0 +1,210 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Persistent cache of file hashes keyed by absolute path and validated by (size, mtime, inode).
+ * Only files visited during the current walk are written back, so entries of deleted files expire.
+ */
+class HashIndex {
+    private static final int MAGIC = 0x52574958;
+    private static final int VERSION = 2;
+    private static final long NO_INODE = -1;
+
+    private final Path file;
+    private final FileHasher hasher;
+    private final WalkMetrics metrics;
+    private final Map<String, Entry> previous;
+    private final Map<String, Entry> current;
+    private boolean keepPrevious;
+
+    private HashIndex(Path file, FileHasher hasher, WalkMetrics metrics, Map<String, Entry> previous) {
+        this.file = file;
+        this.hasher = hasher;
+        this.metrics = metrics;
+        this.previous = previous;
+        this.current = new ConcurrentHashMap<>();
+    }
+
+    static HashIndex load(Path file, FileHasher hasher, WalkMetrics metrics) {
+        Map<String, Entry> entries = new HashMap<>();
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("unknown index format");
+                }
+                if (!in.readUTF().equals(hasher.name())) {
+                    throw new IOException("index was built with another hash algorithm");
+                }
+                int digestLength = in.readInt();
+
+                int count = in.readInt();
+                byte[] key = new byte[0];
+                for (int i = 0; i < count; i++) {
+                    int prefix = in.readInt();
+                    byte[] next = new byte[prefix + in.readInt()];
+                    System.arraycopy(key, 0, next, 0, prefix);
+                    in.readFully(next, prefix, next.length - prefix);
+                    key = next;
+
+                    Entry entry = new Entry(in.readLong(), in.readLong(), in.readLong(), new byte[digestLength]);
+                    in.readFully(entry.hash);
+                    entries.put(new String(key, StandardCharsets.UTF_8), entry);
+                }
+            } catch (IOException e) {
+                System.err.println("Ignoring broken index: " + file + ", " + e.getMessage());
+                entries.clear();
+            }
+        }
+        return new HashIndex(file, hasher, metrics, entries);
+    }
+
+    /**
+     * Returns stored hash of the file if its metadata did not change, otherwise computes and remembers a new one.
+     */
+    byte[] hash(Path path) throws IOException {
+        String key = key(path);
+        Entry state = readState(path);
+
+        byte[] stored = reuse(key, state);
+        if (stored != null) {
+            return stored;
+        }
+
+        byte[] hash = hasher.hash(path);
+        current.put(key, state.withHash(hash));
+        return hash;
+    }
+
+    /**
+     * Same as {@link #hash(Path)}, but computes missing hash with the given asynchronous function
+     */
+    CompletableFuture<byte[]> hash(Path path, Function<Path, CompletableFuture<byte[]>> compute) throws IOException {
+        String key = key(path);
+        Entry state = readState(path);
+
+        byte[] stored = reuse(key, state);
+        if (stored != null) {
+            return CompletableFuture.completedFuture(stored);
+        }
+
+        return compute.apply(path).thenApply(hash -> {
+            current.put(key, state.withHash(hash));
+            return hash;
+        });
+    }
+
+    private static String key(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    private byte[] reuse(String key, Entry state) {
+        Entry stored = previous.get(key);
+        if (stored != null && stored.sameFile(state)) {
+            metrics.cached();
+            current.put(key, stored);
+            return stored.hash;
+        }
+        return null;
+    }
+
+    /**
+     * Keeps entries of files which were not visited, used when a resumed walk skips already written files
+     */
+    void keepPrevious() {
+        keepPrevious = true;
+    }
+
+    void save() throws IOException {
+        Map<String, Entry> current = this.current;
+        if (keepPrevious) {
+            current = new HashMap<>(previous);
+            current.putAll(this.current);
+        }
+        List<String> keys = new ArrayList<>(current.keySet());
+        Collections.sort(keys);
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(hasher.name());
+            out.writeInt(hasher.algorithm().digestLength());
+            out.writeInt(keys.size());
+
+            byte[] previousKey = new byte[0];
+            for (String key : keys) {
+                byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+                int prefix = commonPrefix(previousKey, bytes);
+                out.writeInt(prefix);
+                out.writeInt(bytes.length - prefix);
+                out.write(bytes, prefix, bytes.length - prefix);
+                previousKey = bytes;
+
+                Entry entry = current.get(key);
+                out.writeLong(entry.size);
+                out.writeLong(entry.mtime);
+                out.writeLong(entry.inode);
+                out.write(entry.hash);
+            }
+        }
+
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static int commonPrefix(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        int i = 0;
+        while (i < length && a[i] == b[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private static Entry readState(Path path) throws IOException {
+        try {
+            Map<String, Object> attributes = Files.readAttributes(path, "unix:size,lastModifiedTime,ino");
+            return new Entry((Long) attributes.get("size"),
+                    ((FileTime) attributes.get("lastModifiedTime")).to(TimeUnit.NANOSECONDS),
+                    (Long) attributes.get("ino"), null);
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new Entry(attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS), NO_INODE, null);
+        }
+    }
+
+    private static class Entry {
+        final long size;
+        final long mtime;
+        final long inode;
+        final byte[] hash;
+
+        Entry(long size, long mtime, long inode, byte[] hash) {
+            this.size = size;
+            this.mtime = mtime;
+            this.inode = inode;
+            this.hash = hash;
+        }
+
+        boolean sameFile(Entry other) {
+            return size == other.size && mtime == other.mtime && inode == other.inode;
+        }
+
+        Entry withHash(byte[] hash) {
+            return new Entry(size, mtime, inode, hash);
+        }
+    }
+}
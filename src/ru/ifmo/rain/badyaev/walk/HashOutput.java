@@ -0,0 +1,110 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes {@code <hex digest> <file name><line separator>} lines in UTF-8.
+ * Digests are hex-encoded and names are encoded straight into a reusable buffer,
+ * which is flushed to the channel when full, so no objects are created per line.
+ */
+class HashOutput implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte SPACE = ' ';
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] lineSeparator;
+    private final CharsetEncoder encoder;
+    private char[] chars;
+    private CharBuffer charBuffer;
+
+    HashOutput(WritableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.lineSeparator = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+        this.encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.chars = new char[256];
+        this.charBuffer = CharBuffer.wrap(chars);
+    }
+
+    void write(byte[] digest, String fileName) throws IOException {
+        ensureRemaining(2 * digest.length + 1);
+        for (byte b : digest) {
+            buffer.put(HEX_DIGITS[(b >> 4) & 15]);
+            buffer.put(HEX_DIGITS[b & 15]);
+        }
+        buffer.put(SPACE);
+
+        writeName(fileName);
+
+        ensureRemaining(lineSeparator.length);
+        buffer.put(lineSeparator);
+    }
+
+    void writeEmptyLine() throws IOException {
+        ensureRemaining(lineSeparator.length);
+        buffer.put(lineSeparator);
+    }
+
+    private void writeName(String fileName) throws IOException {
+        int length = fileName.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, 2 * chars.length)];
+            charBuffer = CharBuffer.wrap(chars);
+        }
+        fileName.getChars(0, length, chars, 0);
+
+        int ascii = 0;
+        while (ascii < length && chars[ascii] < 0x80) {
+            ascii++;
+        }
+        if (ascii == length && buffer.remaining() >= length) {
+            for (int i = 0; i < length; i++) {
+                buffer.put((byte) chars[i]);
+            }
+            return;
+        }
+
+        charBuffer.clear().limit(length);
+        encoder.reset();
+        while (encoder.encode(charBuffer, buffer, true).isOverflow()) {
+            flush();
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            flush();
+        }
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Reorder buffer between hashing workers and output file.
+ * Lines are written strictly in order of submission, while hashes may be computed in any order.
+ * At most {@code window} submitted hashes wait for output, so submitter blocks when workers fall behind.
+ */
+class OrderedHashWriter implements Closeable {
+    private final HashOutput output;
+    private final int window;
+    private final byte[] badFileHash;
+    private final WalkMetrics metrics;
+    private final Deque<Pending> pending;
+    private volatile int pendingCount;
+
+    OrderedHashWriter(HashOutput output, int window, byte[] badFileHash, WalkMetrics metrics) {
+        this.output = output;
+        this.window = window;
+        this.badFileHash = badFileHash;
+        this.metrics = metrics;
+        this.pending = new ArrayDeque<>();
+        metrics.queue("reorder", () -> pendingCount);
+    }
+
+    void write(String fileName, byte[] hash) {
+        if (pending.isEmpty()) {
+            printHash(hash, fileName);
+        } else {
+            pending.add(new Pending(fileName, null, hash));
+            pendingCount = pending.size();
+        }
+    }
+
+    /**
+     * Writes an empty line after all submitted hashes
+     */
+    void separate() {
+        drain();
+        try {
+            output.writeEmptyLine();
+        } catch (IOException e) {
+            metrics.error(e);
+            System.err.println("Error while writing to output file");
+        }
+    }
+
+    void submit(String fileName, Future<byte[]> hash) {
+        pending.add(new Pending(fileName, hash, null));
+        while (pending.size() > window) {
+            printFirst();
+        }
+        pendingCount = pending.size();
+    }
+
+    /**
+     * Waits for all submitted hashes and writes them through to the output channel
+     */
+    void flush() throws IOException {
+        drain();
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            output.close();
+        }
+    }
+
+    private void drain() {
+        while (!pending.isEmpty()) {
+            printFirst();
+        }
+        pendingCount = 0;
+    }
+
+    private void printFirst() {
+        Pending first = pending.poll();
+        printHash(first.get(), first.fileName);
+    }
+
+    private void printHash(byte[] hash, String file) {
+        try {
+            output.write(hash, file);
+            metrics.file();
+        } catch (IOException e) {
+            metrics.error(e);
+            System.err.println("Error while writing to output file");
+        }
+    }
+
+    private class Pending {
+        final String fileName;
+        final Future<byte[]> future;
+        final byte[] hash;
+
+        Pending(String fileName, Future<byte[]> future, byte[] hash) {
+            this.fileName = fileName;
+            this.future = future;
+            this.hash = hash;
+        }
+
+        byte[] get() {
+            if (future == null) {
+                return hash;
+            }
+
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                metrics.error(e);
+                System.err.println("Error while hashing: " + fileName + ", " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return badFileHash;
+        }
+    }
+}
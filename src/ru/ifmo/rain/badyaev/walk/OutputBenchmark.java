@@ -0,0 +1,116 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Measures output stage throughput on many small files, like test02/test05 datasets.
+ * Usage: OutputBenchmark [files]
+ */
+public class OutputBenchmark {
+    private static final int WARMUP = 3;
+    private static final int ITERATIONS = 5;
+    private static final int FILES_PER_DIRECTORY = 10;
+    private static final int NAME_LENGTH = 30;
+    private static final int MAX_FILE_SIZE = 64;
+    private static final String NAME_CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    private interface Writer {
+        void write(Path output, List<String> names, List<byte[]> digests) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Path directory = Files.createTempDirectory("output-benchmark");
+        try {
+            createDataset(directory, files);
+            List<String> names;
+            try (Stream<Path> paths = Files.walk(directory)) {
+                names = paths.filter(Files::isRegularFile).map(Path::toString).collect(Collectors.toList());
+            }
+            FileHasher hasher = new FileHasher(HashAlgorithm.defaultAlgorithm());
+            List<byte[]> digests = new ArrayList<>();
+            for (String name : names) {
+                digests.add(hasher.hash(Path.of(name)));
+            }
+
+            Path output = directory.resolve("output.txt");
+            System.out.printf("%d files: string writer %.0f lines/s, hash output %.0f lines/s%n", names.size(),
+                    measure(output, names, digests, OutputBenchmark::writeStrings),
+                    measure(output, names, digests, OutputBenchmark::writeBytes));
+
+            Path input = directory.resolve("input.txt");
+            Files.write(input, List.of(directory.resolve("data").toString()));
+            long start = System.nanoTime();
+            RecursiveWalk.main(new String[]{input.toString(), output.toString()});
+            System.out.printf("walk: %.0f files/s%n", names.size() / ((System.nanoTime() - start) / 1e9));
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    private static double measure(Path output, List<String> names, List<byte[]> digests, Writer writer) throws IOException {
+        double best = 0;
+        for (int iteration = 0; iteration < WARMUP + ITERATIONS; iteration++) {
+            long start = System.nanoTime();
+            writer.write(output, names, digests);
+            double linesPerSecond = names.size() / ((System.nanoTime() - start) / 1e9);
+            if (iteration >= WARMUP) {
+                best = Math.max(best, linesPerSecond);
+            }
+        }
+        return best;
+    }
+
+    private static void writeStrings(Path output, List<String> names, List<byte[]> digests) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output.toFile()), StandardCharsets.UTF_8))) {
+            for (int i = 0; i < names.size(); i++) {
+                String hash = String.format("%08x", ByteBuffer.wrap(digests.get(i)).getInt());
+                writer.write(hash + " " + names.get(i) + System.getProperty("line.separator"));
+            }
+        }
+    }
+
+    private static void writeBytes(Path output, List<String> names, List<byte[]> digests) throws IOException {
+        try (HashOutput writer = new HashOutput(new FileOutputStream(output.toFile()).getChannel())) {
+            for (int i = 0; i < names.size(); i++) {
+                writer.write(digests.get(i), names.get(i));
+            }
+        }
+    }
+
+    private static void createDataset(Path directory, int files) throws IOException {
+        Random random = new Random(files);
+        Path data = directory.resolve("data");
+        Path subdirectory = data;
+        for (int i = 0; i < files; i++) {
+            if (i % FILES_PER_DIRECTORY == 0) {
+                subdirectory = Files.createDirectories(data.resolve(randomName(random, i / FILES_PER_DIRECTORY)));
+            }
+            byte[] content = new byte[random.nextInt(MAX_FILE_SIZE + 1)];
+            random.nextBytes(content);
+            Files.write(subdirectory.resolve(randomName(random, i)), content);
+        }
+    }
+
+    private static String randomName(Random random, int seed) {
+        StringBuilder name = new StringBuilder(Integer.toString(seed)).append('_');
+        while (name.length() < NAME_LENGTH) {
+            name.append(NAME_CHARACTERS.charAt(random.nextInt(NAME_CHARACTERS.length())));
+        }
+        return name.toString();
+    }
+}
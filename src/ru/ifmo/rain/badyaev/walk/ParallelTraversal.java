@@ -0,0 +1,187 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiPredicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Directory traversal which lists subdirectories ahead of the consumer on a work-stealing pool.
+ * Matching non-directory entries are returned in the same depth-first order as {@link Files#find},
+ * and at most {@code prefetch} listed directories wait for the consumer at any time.
+ * Attributes read while listing are passed to the matcher, so entries are not stat-ed again.
+ */
+class ParallelTraversal implements Closeable {
+    private final ForkJoinPool pool;
+    private final Semaphore prefetch;
+    private final WalkMetrics metrics;
+
+    ParallelTraversal(int parallelism, int prefetch, WalkMetrics metrics) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.prefetch = new Semaphore(prefetch);
+        this.metrics = metrics;
+        metrics.queue("prefetch", () -> prefetch - this.prefetch.availablePermits());
+    }
+
+    Stream<Path> find(Path root, int maxDepth, BiPredicate<Path, BasicFileAttributes> matcher) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(root, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (!attributes.isDirectory()) {
+            return matcher.test(root, attributes) ? Stream.of(root) : Stream.empty();
+        }
+        if (maxDepth == 0) {
+            return Stream.empty();
+        }
+
+        List<Entry> rootEntries = list(root, 1, maxDepth);
+        Iterator<Path> iterator = new Iterator<>() {
+            private final Deque<Iterator<Entry>> stack = new ArrayDeque<>(List.of(rootEntries.iterator()));
+            private Path next = advance();
+
+            private Path advance() {
+                while (!stack.isEmpty()) {
+                    Iterator<Entry> top = stack.peek();
+                    if (!top.hasNext()) {
+                        stack.pop();
+                        continue;
+                    }
+
+                    Entry entry = top.next();
+                    if (entry.attributes == null) {
+                        continue;
+                    }
+                    if (!entry.attributes.isDirectory()) {
+                        if (matcher.test(entry.path, entry.attributes)) {
+                            return entry.path;
+                        }
+                    } else if (entry.depth < maxDepth) {
+                        try {
+                            stack.push(take(entry, maxDepth).iterator());
+                        } catch (UncheckedIOException e) {
+                            metrics.error(e.getCause());
+                            System.err.println("Error while scanning: " + entry.path + ", " + e.getCause().getMessage());
+                        }
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Path next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Path result = next;
+                next = advance();
+                return result;
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT), false);
+    }
+
+    private List<Entry> take(Entry directory, int maxDepth) {
+        if (directory.listing == null) {
+            try {
+                return list(directory.path, directory.depth + 1, maxDepth);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        try {
+            return directory.listing.join();
+        } finally {
+            prefetch.release();
+        }
+    }
+
+    /**
+     * Lists entries of depth {@code depth}, entries which can't be stat-ed have no attributes
+     */
+    private List<Entry> list(Path directory, int depth, int maxDepth) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        metrics.directory();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException e) {
+                    attributes = null;
+                }
+                entries.add(new Entry(path, attributes, depth));
+            }
+        }
+
+        if (depth >= maxDepth) {
+            return entries;
+        }
+        for (Entry entry : entries) {
+            if (entry.attributes != null && entry.attributes.isDirectory() && prefetch.tryAcquire()) {
+                entry.listing = new ListTask(entry.path, depth + 1, maxDepth);
+                if (ForkJoinTask.inForkJoinPool()) {
+                    entry.listing.fork();
+                } else {
+                    pool.execute(entry.listing);
+                }
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private static class Entry {
+        final Path path;
+        final BasicFileAttributes attributes;
+        final int depth;
+        ListTask listing;
+
+        Entry(Path path, BasicFileAttributes attributes, int depth) {
+            this.path = path;
+            this.attributes = attributes;
+            this.depth = depth;
+        }
+    }
+
+    private class ListTask extends RecursiveTask<List<Entry>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final int depth;
+        private final int maxDepth;
+
+        ListTask(Path directory, int depth, int maxDepth) {
+            this.directory = directory;
+            this.depth = depth;
+            this.maxDepth = maxDepth;
+        }
+
+        @Override
+        protected List<Entry> compute() {
+            try {
+                return list(directory, depth, maxDepth);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -1,94 +1,248 @@
 package ru.ifmo.rain.badyaev.walk;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.stream.Stream;
 
-public class RecursiveWalk {
-    private static int FNV_CONST = 16777619;
-    private static int FNV0 = (int) 2166136261L;
-    private static String BAD_FILE_HASH = "00000000";
+public class RecursiveWalk implements AutoCloseable {
+    private static final int WINDOW_PER_THREAD = 64;
+    private static final int PREFETCH_PER_WALKER = 64;
+    private static final int ASYNC_BUFFER_SIZE = 1 << 16;
+    private static final int INPUT_BUFFER_SIZE = 1 << 16;
 
-    public static void main(String[] args) {
-        if (args == null || args.length != 2 || args[0] == null || args[1] == null) {
-            System.err.println("Usage: RecursiveWalk <input> <output>");
+    private final WalkMetrics metrics;
+    private final Path summary;
+    private final ExecutorService executor;
+    private final FileHasher hasher;
+    private final TreeHasher treeHasher;
+    private final HashIndex index;
+    private final ParallelTraversal traversal;
+    private final Deduplicator deduplicator;
+    private final AsyncHasher asyncHasher;
+    private final Checkpoint checkpoint;
+    private final WalkFilter filter;
+    private final byte[] badFileHash;
+
+    private RecursiveWalk(WalkOptions options) {
+        this.metrics = new WalkMetrics();
+        this.summary = options.summary != null ? Paths.get(options.summary) : null;
+        if (options.virtualThreads) {
+            this.executor = VirtualThreadExecutor.create(options.maxOpenFiles);
         } else {
-            int lastSlash = args[1].lastIndexOf(System.getProperty("file.separator"));
-            if (lastSlash != -1) {
-                new File(args[1].substring(0, lastSlash)).mkdirs();
-            }
+            this.executor = options.threads > 1 ? Executors.newFixedThreadPool(options.threads) : null;
+        }
+        if (executor instanceof ThreadPoolExecutor) {
+            metrics.queue("hash", ((ThreadPoolExecutor) executor).getQueue()::size);
+        }
+        this.treeHasher = options.treeChunkMegabytes > 0
+                ? new TreeHasher(options.algorithm, (long) options.treeChunkMegabytes << 20, Runtime.getRuntime().availableProcessors())
+                : null;
+        this.hasher = new FileHasher(options.algorithm, metrics, treeHasher);
+        this.index = options.index != null ? HashIndex.load(Paths.get(options.index), hasher, metrics) : null;
+        this.badFileHash = new byte[options.algorithm.digestLength()];
+        this.traversal = options.walkers > 0 ? new ParallelTraversal(options.walkers, options.walkers * PREFETCH_PER_WALKER, metrics) : null;
+        this.deduplicator = options.dedupe ? new Deduplicator(hasher, index, executor, metrics) : null;
+        this.asyncHasher = options.queueDepth > 0 ? new AsyncHasher(options.algorithm, executor, options.queueDepth, ASYNC_BUFFER_SIZE, metrics) : null;
+        this.checkpoint = Checkpoint.create(options, hasher.name());
+        this.filter = options.filter;
+        metrics.start(options.progressSeconds);
+    }
 
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8))) {
-                try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[1]), StandardCharsets.UTF_8))) {
-
-                    String directoryName = reader.readLine();
-                    while (directoryName != null) {
-                        File directory = new File(directoryName);
-                        if (directory.isFile()) {
-                            printHash(writer, findHash(directory), directoryName);
-                        } else {
-                            try {
-                                Stream<Path> paths = Files.walk(Paths.get(directoryName));
-
-                                paths.forEach((path) -> {
-                                    String fileName = path.toString();
-                                    File file = new File(fileName);
-                                    if (file.isFile()) {
-                                        printHash(writer, findHash(file), fileName);
-                                    }
-                                });
-                            } catch (NoSuchFileException | InvalidPathException e) {
-                                printHash(writer, BAD_FILE_HASH, directoryName);
-                            } catch (IOException e) {
-                                System.err.println("Error while scanning: " + directory + ", " + e.getMessage());
-                            }
-                        }
-
-                        directoryName = reader.readLine();
-                    }
-                } catch (UnsupportedEncodingException e) {
-                    System.err.println("Unsupported encoding utf-8");
-                } catch (FileNotFoundException e) {
-                    System.err.println("Can't create or open file: " + args[1] + ", " + e.getMessage());
-                } catch (SecurityException e) {
-                    System.err.println("Don't have access to write to file: " + args[1] + ", " + e.getMessage());
-                }
+    public static void main(String[] args) {
+        WalkOptions options;
+        try {
+            options = WalkOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+
+        int lastSlash = options.output.lastIndexOf(System.getProperty("file.separator"));
+        if (lastSlash != -1) {
+            new File(options.output.substring(0, lastSlash)).mkdirs();
+        }
 
-            } catch (UnsupportedEncodingException e) {
-                System.err.println("Unsupported encoding utf-8");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(options.input), StandardCharsets.UTF_8), INPUT_BUFFER_SIZE)) {
+            try (RecursiveWalk walk = new RecursiveWalk(options);
+                 OrderedHashWriter writer = new OrderedHashWriter(new HashOutput(walk.openOutput(options.output)),
+                         window(options), walk.badFileHash, walk.metrics)) {
+                walk.walk(reader, writer);
             } catch (FileNotFoundException e) {
-                System.err.println("File not found: " + args[0] + ", " + e.getMessage());
+                System.err.println("Can't create or open file: " + options.output + ", " + e.getMessage());
             } catch (SecurityException e) {
-                System.err.println("Don't have access to read from file: " + args[0] + ", " + e.getMessage());
-            } catch (IOException e) {
-                System.err.println("Error while reading from: " + args[0] + ", " + e.getMessage());
+                System.err.println("Don't have access to write to file: " + options.output + ", " + e.getMessage());
+            }
+
+        } catch (UnsupportedEncodingException e) {
+            System.err.println("Unsupported encoding utf-8");
+        } catch (FileNotFoundException e) {
+            System.err.println("File not found: " + options.input + ", " + e.getMessage());
+        } catch (SecurityException e) {
+            System.err.println("Don't have access to read from file: " + options.input + ", " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Error while reading from: " + options.input + ", " + e.getMessage());
+        }
+    }
+
+    private static int window(WalkOptions options) {
+        int inFlight = Math.max(options.queueDepth, options.virtualThreads ? options.maxOpenFiles : 0);
+        return Math.max(options.threads * WINDOW_PER_THREAD, 2 * inFlight);
+    }
+
+    private FileChannel openOutput(String output) throws IOException {
+        if (checkpoint == null) {
+            return new FileOutputStream(output).getChannel();
+        }
+        FileChannel channel = checkpoint.open(output);
+        if (index != null && checkpoint.resumed()) {
+            index.keepPrevious();
+        }
+        return channel;
+    }
+
+    private void walk(BufferedReader reader, OrderedHashWriter writer) throws IOException {
+        String directoryName = reader.readLine();
+        while (directoryName != null) {
+            if (checkpoint == null) {
+                walk(writer, directoryName);
+            } else {
+                if (!checkpoint.skipLine()) {
+                    walk(writer, directoryName);
+                }
+                checkpoint.nextLine();
             }
+            directoryName = reader.readLine();
+        }
+
+        if (deduplicator != null) {
+            deduplicator.write(writer);
+        }
+        if (checkpoint != null) {
+            writer.flush();
+            checkpoint.finish();
         }
     }
 
-    private static String findHash(File file) {
-        try (InputStream is = new FileInputStream(file)) {
-            byte[] buf = new byte[4096];
-            int size;
-            int hash = FNV0;
-            while ((size = is.read(buf)) != -1) {
-                for (int i = 0; i < size; i++) {
-                    hash *= FNV_CONST;
-                    hash ^= buf[i] & 255;
+    /**
+     * Attributes of input line are read once and follow links like {@link File#isFile}, entries below it
+     * are checked by attributes of the traversal
+     */
+    private void walk(OrderedHashWriter writer, String directoryName) {
+        try {
+            Path directory = Paths.get(directoryName);
+            BasicFileAttributes attributes = Files.readAttributes(directory, BasicFileAttributes.class);
+            if (!attributes.isDirectory()) {
+                if (filter.test(directory, attributes)) {
+                    hash(writer, directory, directoryName);
                 }
+                return;
+            }
+
+            try (Stream<Path> paths = traversal != null
+                    ? traversal.find(directory, filter.maxDepth(), filter)
+                    : Files.find(directory, filter.maxDepth(), this::accept)) {
+                paths.forEach(path -> hash(writer, path, path.toString()));
             }
-            return String.format("%08x", hash);
+        } catch (NoSuchFileException | InvalidPathException e) {
+            metrics.error(e);
+            writeBadFile(writer, directoryName);
+        } catch (IOException e) {
+            metrics.error(e);
+            System.err.println("Error while scanning: " + directoryName + ", " + e.getMessage());
+        }
+    }
+
+    private boolean accept(Path path, BasicFileAttributes attributes) {
+        if (attributes.isDirectory()) {
+            metrics.directory();
+            return false;
+        }
+        return filter.test(path, attributes);
+    }
+
+    private void writeBadFile(OrderedHashWriter writer, String fileName) {
+        if (checkpoint != null && checkpoint.skipEntry()) {
+            return;
+        }
+
+        if (deduplicator == null) {
+            writer.write(fileName, badFileHash);
+            tick(writer);
+        } else {
+            System.err.println("File not found: " + fileName);
+        }
+    }
+
+    private void hash(OrderedHashWriter writer, Path file, String fileName) {
+        if (checkpoint != null && checkpoint.skipEntry()) {
+            return;
+        }
+
+        if (deduplicator != null) {
+            deduplicator.add(file, fileName);
+        } else if (asyncHasher != null) {
+            writer.submit(fileName, findHashAsync(file));
+        } else if (executor == null) {
+            writer.write(fileName, findHash(file));
+        } else {
+            writer.submit(fileName, executor.submit(() -> findHash(file)));
+        }
+        tick(writer);
+    }
+
+    private void tick(OrderedHashWriter writer) {
+        if (checkpoint != null) {
+            checkpoint.tick(writer, index);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (traversal != null) {
+            traversal.close();
+        }
+        if (treeHasher != null) {
+            treeHasher.close();
+        }
+        if (index != null) {
+            try {
+                index.save();
+            } catch (IOException e) {
+                System.err.println("Error while saving index, " + e.getMessage());
+            }
+        }
+        metrics.stop(summary);
+    }
+
+    private CompletableFuture<byte[]> findHashAsync(Path file) {
+        try {
+            CompletableFuture<byte[]> hash = index != null ? index.hash(file, asyncHasher::hash) : asyncHasher.hash(file);
+            return hash.exceptionally(e -> {
+                metrics.error(e);
+                return badFileHash;
+            });
         } catch (IOException e) {
-            return BAD_FILE_HASH;
+            metrics.error(e);
+            return CompletableFuture.completedFuture(badFileHash);
         }
     }
 
-    private static void printHash(BufferedWriter writer, String hash, String file) {
+    private byte[] findHash(Path file) {
         try {
-            writer.write(hash + " " + file + System.getProperty("line.separator"));
+            return index != null ? index.hash(file) : hasher.hash(file);
         } catch (IOException e) {
-            System.err.println("Error while writing to output file");
+            metrics.error(e);
+            return badFileHash;
         }
     }
-}
\ No newline at end of file
+}
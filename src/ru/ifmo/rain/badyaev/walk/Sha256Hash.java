@@ -0,0 +1,44 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 through {@link MessageDigest}
+ */
+class Sha256Hash implements HashAlgorithm {
+    private static final String ALGORITHM = "SHA-256";
+
+    @Override
+    public String name() {
+        return "sha256";
+    }
+
+    @Override
+    public int digestLength() {
+        return 32;
+    }
+
+    @Override
+    public Hasher newHasher() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(ALGORITHM + " is required by every Java platform", e);
+        }
+
+        return new Hasher() {
+            @Override
+            public void update(ByteBuffer buffer) {
+                digest.update(buffer);
+            }
+
+            @Override
+            public byte[] digest() {
+                return digest.digest();
+            }
+        };
+    }
+}
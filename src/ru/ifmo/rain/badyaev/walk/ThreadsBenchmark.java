@@ -0,0 +1,62 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares hashing on platform thread pools and on virtual threads.
+ * Input list repeats every {@code __Test__Walk__} fixture directory {@code scale} times.
+ * Usage: ThreadsBenchmark [fixtures [scale]]
+ */
+public class ThreadsBenchmark {
+    private static final String[][] MODES = {
+            {},
+            {"--threads", "4"},
+            {"--threads", "64"},
+            {"--virtual-threads"},
+            {"--virtual-threads", "--max-open", "64"},
+    };
+
+    public static void main(String[] args) throws IOException {
+        Path fixtures = Paths.get(args.length > 0 ? args[0] : "__Test__Walk__");
+        int scale = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        List<String> directories;
+        try (Stream<Path> paths = Files.list(fixtures)) {
+            directories = paths.filter(Files::isDirectory).map(Path::toString).sorted().collect(Collectors.toList());
+        }
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < scale; i++) {
+            lines.addAll(directories);
+        }
+
+        Path input = Files.createTempFile("threads-benchmark", ".in");
+        Path output = Files.createTempFile("threads-benchmark", ".out");
+        try {
+            Files.write(input, lines);
+            for (String[] mode : MODES) {
+                List<String> walkArgs = new ArrayList<>(List.of(mode));
+                walkArgs.add(input.toString());
+                walkArgs.add(output.toString());
+
+                long start = System.nanoTime();
+                RecursiveWalk.main(walkArgs.toArray(new String[0]));
+                double seconds = (System.nanoTime() - start) / 1e9;
+                long files;
+                try (Stream<String> outputLines = Files.lines(output)) {
+                    files = outputLines.count();
+                }
+                System.out.printf("%-40s %8.2f s, %10.0f files/s%n", String.join(" ", mode), seconds, files / seconds);
+            }
+        } finally {
+            Files.delete(input);
+            Files.delete(output);
+        }
+    }
+}
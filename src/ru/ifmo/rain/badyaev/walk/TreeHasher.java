@@ -0,0 +1,86 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Tree hash of large files: file is split into fixed chunks, every chunk is memory-mapped and hashed
+ * on a work-stealing pool, and the result is the hash of concatenated chunk hashes.
+ * Files which fit into one chunk are hashed as usual, so tree hash differs from the classic one only for large files.
+ */
+class TreeHasher implements Closeable {
+    private final HashAlgorithm algorithm;
+    private final long chunkSize;
+    private final ForkJoinPool pool;
+
+    TreeHasher(HashAlgorithm algorithm, long chunkSize, int parallelism) {
+        this.algorithm = algorithm;
+        this.chunkSize = chunkSize;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    long chunkSize() {
+        return chunkSize;
+    }
+
+    byte[] hash(FileChannel channel, long size) throws IOException {
+        byte[][] digests = new byte[(int) ((size + chunkSize - 1) / chunkSize)][];
+        try {
+            pool.invoke(new ChunkTask(channel, size, digests, 0, digests.length));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        HashAlgorithm.Hasher hasher = algorithm.newHasher();
+        for (byte[] digest : digests) {
+            hasher.update(ByteBuffer.wrap(digest));
+        }
+        return hasher.digest();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long size;
+        private final byte[][] digests;
+        private final int from;
+        private final int to;
+
+        ChunkTask(FileChannel channel, long size, byte[][] digests, int from, int to) {
+            this.channel = channel;
+            this.size = size;
+            this.digests = digests;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask(channel, size, digests, from, middle), new ChunkTask(channel, size, digests, middle, to));
+                return;
+            }
+
+            long position = from * chunkSize;
+            HashAlgorithm.Hasher hasher = algorithm.newHasher();
+            try {
+                hasher.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(chunkSize, size - position)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            digests[from] = hasher.digest();
+        }
+    }
+}
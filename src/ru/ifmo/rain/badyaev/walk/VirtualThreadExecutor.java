@@ -0,0 +1,84 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs every task in its own virtual thread, while at most {@code maxOpenFiles} tasks run at once.
+ * Waiting tasks are parked virtual threads, so blocking reads do not hold platform threads.
+ * Virtual threads are not reused, so every running task is lent one of at most {@code maxOpenFiles} pooled read buffers
+ * instead of allocating a per-thread one, see {@link FileHasher#withBuffer}.
+ */
+class VirtualThreadExecutor extends AbstractExecutorService {
+    private final ExecutorService executor;
+    private final Semaphore openFiles;
+    private final ArrayBlockingQueue<ByteBuffer> buffers;
+
+    private VirtualThreadExecutor(ExecutorService executor, int maxOpenFiles) {
+        this.executor = executor;
+        this.openFiles = new Semaphore(maxOpenFiles);
+        this.buffers = new ArrayBlockingQueue<>(maxOpenFiles);
+    }
+
+    /**
+     * Falls back to a pool of {@code maxOpenFiles} platform threads when JVM has no virtual threads
+     */
+    static ExecutorService create(int maxOpenFiles) {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return new VirtualThreadExecutor(executor, maxOpenFiles);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            System.err.println("Virtual threads are not available, using " + maxOpenFiles + " platform threads");
+            return Executors.newFixedThreadPool(maxOpenFiles);
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(() -> {
+            openFiles.acquireUninterruptibly();
+            // buffers are allocated on demand, a permit holder always finds one unless fewer than permits exist
+            ByteBuffer buffer = buffers.poll();
+            if (buffer == null) {
+                buffer = FileHasher.newBuffer();
+            }
+            try {
+                FileHasher.withBuffer(buffer, task);
+            } finally {
+                buffers.offer(buffer);
+                openFiles.release();
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return executor.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return executor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+}
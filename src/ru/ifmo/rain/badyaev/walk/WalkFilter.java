@@ -0,0 +1,92 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiPredicate;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Selects files to hash by attributes which the traversal has already read, so rejected files are never opened.
+ * Globs without a separator match file names, other globs match paths as they are printed.
+ */
+class WalkFilter implements BiPredicate<Path, BasicFileAttributes> {
+    private final List<Glob> includes;
+    private final List<Glob> excludes;
+    private final long minSize;
+    private final long maxSize;
+    private final int maxDepth;
+
+    /**
+     * @throws PatternSyntaxException if some glob is invalid
+     */
+    WalkFilter(List<String> includes, List<String> excludes, long minSize, long maxSize, int maxDepth) {
+        this.includes = globs(includes);
+        this.excludes = globs(excludes);
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.maxDepth = maxDepth;
+    }
+
+    int maxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Accepts regular files, links are checked by attributes of their targets like {@link java.io.File#isFile}
+     */
+    @Override
+    public boolean test(Path path, BasicFileAttributes attributes) {
+        if (attributes.isSymbolicLink()) {
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        if (!attributes.isRegularFile() || attributes.size() < minSize || attributes.size() > maxSize) {
+            return false;
+        }
+        return (includes.isEmpty() || matches(includes, path)) && !matches(excludes, path);
+    }
+
+    private static boolean matches(List<Glob> globs, Path path) {
+        for (Glob glob : globs) {
+            if (glob.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Glob> globs(List<String> patterns) {
+        FileSystem fileSystem = FileSystems.getDefault();
+        List<Glob> globs = new ArrayList<>();
+        for (String pattern : patterns) {
+            boolean wholePath = pattern.contains("/") || pattern.contains(fileSystem.getSeparator());
+            globs.add(new Glob(fileSystem.getPathMatcher("glob:" + pattern), wholePath));
+        }
+        return globs;
+    }
+
+    private static class Glob {
+        private final PathMatcher matcher;
+        private final boolean wholePath;
+
+        Glob(PathMatcher matcher, boolean wholePath) {
+            this.matcher = matcher;
+            this.wholePath = wholePath;
+        }
+
+        boolean matches(Path path) {
+            Path matched = wholePath ? path : path.getFileName();
+            return matched != null && matcher.matches(matched);
+        }
+    }
+}
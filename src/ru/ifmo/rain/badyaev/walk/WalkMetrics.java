@@ -0,0 +1,190 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Counters of a walk. Updated from hashing threads through {@link LongAdder}s,
+ * read by JMX, periodic progress line and final JSON summary.
+ */
+class WalkMetrics implements WalkMetricsMXBean {
+    private static final String OBJECT_NAME = "ru.ifmo.rain.badyaev.walk:type=WalkMetrics";
+    private static final double MEGABYTE = 1 << 20;
+
+    private final long start = System.nanoTime();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder cachedFiles = new LongAdder();
+    private final LongAdder directories = new LongAdder();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final Map<String, IntSupplier> queues = new ConcurrentSkipListMap<>();
+
+    private ScheduledExecutorService reporter;
+    private ObjectName objectName;
+
+    void file() {
+        files.increment();
+    }
+
+    void bytes(long count) {
+        bytes.add(count);
+    }
+
+    void cached() {
+        cachedFiles.increment();
+    }
+
+    void directory() {
+        directories.increment();
+    }
+
+    void error(Throwable e) {
+        Throwable cause = e instanceof CompletionException || e instanceof ExecutionException ? e.getCause() : e;
+        errors.computeIfAbsent(cause.getClass().getSimpleName(), type -> new LongAdder()).increment();
+    }
+
+    /**
+     * Registers gauge of elements waiting in a stage
+     */
+    void queue(String stage, IntSupplier depth) {
+        queues.put(stage, depth);
+    }
+
+    /**
+     * Exports metrics through JMX and starts printing progress to stderr every {@code progressSeconds}, if positive
+     */
+    void start(int progressSeconds) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                objectName = name;
+            }
+        } catch (JMException | SecurityException e) {
+            System.err.println("Can't export walk metrics through JMX, " + e.getMessage());
+        }
+
+        if (progressSeconds > 0) {
+            reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "walk-progress");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleAtFixedRate(() -> System.err.println(progress()), progressSeconds, progressSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stops reporting, prints the final progress line and writes JSON summary, if requested
+     */
+    void stop(Path summary) {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            System.err.println(progress());
+        }
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                System.err.println("Can't unregister walk metrics, " + e.getMessage());
+            }
+        }
+        if (summary != null) {
+            try {
+                Files.write(summary, summary().getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                System.err.println("Error while writing summary: " + summary + ", " + e.getMessage());
+            }
+        }
+    }
+
+    String progress() {
+        return String.format(Locale.ROOT, "walk: %d files (%.1f/s), %.1f MB (%.1f MB/s), %d cached, %d directories, %d errors, queues %s",
+                getFiles(), getFilesPerSecond(), getBytes() / MEGABYTE, getBytesPerSecond() / MEGABYTE,
+                getCachedFiles(), getDirectories(), getErrors(), getQueueDepths());
+    }
+
+    String summary() {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append(String.format(Locale.ROOT, "  \"elapsedSeconds\": %.3f,%n", elapsedSeconds()));
+        json.append("  \"files\": ").append(getFiles()).append(",\n");
+        json.append("  \"bytes\": ").append(getBytes()).append(",\n");
+        json.append("  \"cachedFiles\": ").append(getCachedFiles()).append(",\n");
+        json.append("  \"directories\": ").append(getDirectories()).append(",\n");
+        json.append(String.format(Locale.ROOT, "  \"filesPerSecond\": %.1f,%n", getFilesPerSecond()));
+        json.append(String.format(Locale.ROOT, "  \"bytesPerSecond\": %.1f,%n", getBytesPerSecond()));
+        json.append("  \"errors\": {");
+        String separator = "";
+        for (Map.Entry<String, Long> error : getErrorsByType().entrySet()) {
+            json.append(separator).append("\"").append(error.getKey()).append("\": ").append(error.getValue());
+            separator = ", ";
+        }
+        return json.append("}\n}\n").toString();
+    }
+
+    private double elapsedSeconds() {
+        return Math.max(System.nanoTime() - start, 1) / 1e9;
+    }
+
+    @Override
+    public long getFiles() {
+        return files.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getCachedFiles() {
+        return cachedFiles.sum();
+    }
+
+    @Override
+    public long getDirectories() {
+        return directories.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    @Override
+    public Map<String, Long> getErrorsByType() {
+        Map<String, Long> result = new TreeMap<>();
+        errors.forEach((type, count) -> result.put(type, count.sum()));
+        return result;
+    }
+
+    @Override
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> result = new TreeMap<>();
+        queues.forEach((stage, depth) -> result.put(stage, depth.getAsInt()));
+        return result;
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return getFiles() / elapsedSeconds();
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return getBytes() / elapsedSeconds();
+    }
+}
@@ -0,0 +1,38 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.util.Map;
+
+/**
+ * Progress of a running {@link RecursiveWalk}, exported through JMX
+ */
+public interface WalkMetricsMXBean {
+    /**
+     * Number of lines written to the output
+     */
+    long getFiles();
+
+    /**
+     * Number of bytes read while hashing
+     */
+    long getBytes();
+
+    /**
+     * Number of hashes taken from the index without reading the file
+     */
+    long getCachedFiles();
+
+    long getDirectories();
+
+    long getErrors();
+
+    Map<String, Long> getErrorsByType();
+
+    /**
+     * Current number of elements waiting in every stage
+     */
+    Map<String, Integer> getQueueDepths();
+
+    double getFilesPerSecond();
+
+    double getBytesPerSecond();
+}
@@ -0,0 +1,165 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+class WalkOptions {
+    static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: RecursiveWalk [options] <input> <output>",
+            "  --threads N              hash files on N threads",
+            "  --virtual-threads        hash every file in its own virtual thread",
+            "  --max-open N             files open at once with virtual threads, 256 by default",
+            "  --async DEPTH            hash with asynchronous reads, DEPTH files in flight",
+            "  --walkers N              list directories on N threads",
+            "  --index <file>           reuse hashes of unchanged files stored in the index",
+            "  --dedupe                 print clusters of files with equal contents only,",
+            "                           clusters are separated by empty lines",
+            "  --include <glob>         hash only matching files, may be repeated",
+            "  --exclude <glob>         skip matching files, may be repeated",
+            "                           globs with a separator match paths, others match file names",
+            "  --max-depth N            descend at most N levels below input directories",
+            "  --min-size BYTES         skip files smaller than BYTES",
+            "  --max-size BYTES         skip files larger than BYTES",
+            "  --hash <algorithm>       fnv1 (default), fnv1a64, xxhash64 or sha256",
+            "  --tree-hash CHUNK_MB     hash chunks of larger files in parallel and hash their hashes",
+            "  --checkpoint SECONDS     save position to <output>.checkpoint every SECONDS",
+            "  --resume                 continue from <output>.checkpoint",
+            "  --progress SECONDS       print progress to stderr every SECONDS",
+            "  --summary <file>         write JSON summary of the walk");
+
+    private static final int MAX_TREE_CHUNK_MEGABYTES = 1024;
+
+    String input;
+    String output;
+    int threads = 1;
+    int walkers = 0;
+    int queueDepth = 0;
+    boolean virtualThreads;
+    int maxOpenFiles = 256;
+    String index;
+    boolean dedupe;
+    WalkFilter filter;
+    HashAlgorithm algorithm = HashAlgorithm.defaultAlgorithm();
+    int treeChunkMegabytes = 0;
+    int checkpointSeconds = 0;
+    boolean resume;
+    int progressSeconds = 0;
+    String summary;
+
+    static WalkOptions parse(String[] args) {
+        if (args == null) {
+            throw new IllegalArgumentException(USAGE);
+        }
+
+        WalkOptions options = new WalkOptions();
+        List<String> includes = new ArrayList<>();
+        List<String> excludes = new ArrayList<>();
+        int maxDepth = Integer.MAX_VALUE;
+        long minSize = 0;
+        long maxSize = Long.MAX_VALUE;
+        int positional = 0;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg == null) {
+                throw new IllegalArgumentException(USAGE);
+            }
+
+            if ("--threads".equals(arg)) {
+                options.threads = getPositiveInt(args, ++i, arg);
+            } else if ("--virtual-threads".equals(arg)) {
+                options.virtualThreads = true;
+            } else if ("--max-open".equals(arg)) {
+                options.maxOpenFiles = getPositiveInt(args, ++i, arg);
+            } else if ("--async".equals(arg)) {
+                options.queueDepth = getPositiveInt(args, ++i, arg);
+            } else if ("--walkers".equals(arg)) {
+                options.walkers = getPositiveInt(args, ++i, arg);
+            } else if ("--index".equals(arg)) {
+                options.index = getValue(args, ++i, arg);
+            } else if ("--dedupe".equals(arg)) {
+                options.dedupe = true;
+            } else if ("--include".equals(arg)) {
+                includes.add(getValue(args, ++i, arg));
+            } else if ("--exclude".equals(arg)) {
+                excludes.add(getValue(args, ++i, arg));
+            } else if ("--max-depth".equals(arg)) {
+                maxDepth = getPositiveInt(args, ++i, arg);
+            } else if ("--min-size".equals(arg)) {
+                minSize = getSize(args, ++i, arg);
+            } else if ("--max-size".equals(arg)) {
+                maxSize = getSize(args, ++i, arg);
+            } else if ("--checkpoint".equals(arg)) {
+                options.checkpointSeconds = getPositiveInt(args, ++i, arg);
+            } else if ("--resume".equals(arg)) {
+                options.resume = true;
+            } else if ("--progress".equals(arg)) {
+                options.progressSeconds = getPositiveInt(args, ++i, arg);
+            } else if ("--summary".equals(arg)) {
+                options.summary = getValue(args, ++i, arg);
+            } else if ("--hash".equals(arg)) {
+                options.algorithm = HashAlgorithm.forName(getValue(args, ++i, arg));
+            } else if ("--tree-hash".equals(arg)) {
+                options.treeChunkMegabytes = getPositiveInt(args, ++i, arg);
+                if (options.treeChunkMegabytes > MAX_TREE_CHUNK_MEGABYTES) {
+                    throw new IllegalArgumentException("Tree hash chunk can't exceed " + MAX_TREE_CHUNK_MEGABYTES + " MB");
+                }
+            } else if (positional == 0) {
+                options.input = arg;
+                positional++;
+            } else if (positional == 1) {
+                options.output = arg;
+                positional++;
+            } else {
+                throw new IllegalArgumentException(USAGE);
+            }
+        }
+
+        if (positional != 2) {
+            throw new IllegalArgumentException(USAGE);
+        }
+        try {
+            options.filter = new WalkFilter(includes, excludes, minSize, maxSize, maxDepth);
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("Invalid glob: " + e.getPattern() + ", " + e.getDescription());
+        }
+        if (options.treeChunkMegabytes > 0 && options.queueDepth > 0) {
+            throw new IllegalArgumentException("--tree-hash can't be used with --async");
+        }
+        if (options.dedupe && (options.checkpointSeconds > 0 || options.resume)) {
+            throw new IllegalArgumentException("--dedupe writes output at the end of the walk and can't be checkpointed");
+        }
+        return options;
+    }
+
+    private static String getValue(String[] args, int index, String option) {
+        if (index >= args.length || args[index] == null) {
+            throw new IllegalArgumentException("Missing value for " + option + System.lineSeparator() + USAGE);
+        }
+        return args[index];
+    }
+
+    private static int getPositiveInt(String[] args, int index, String option) {
+        String value = getValue(args, index, option);
+        try {
+            int result = Integer.parseInt(value);
+            if (result > 0) {
+                return result;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Expected positive number for " + option + ", got: " + value);
+    }
+
+    private static long getSize(String[] args, int index, String option) {
+        String value = getValue(args, index, option);
+        try {
+            long result = Long.parseLong(value);
+            if (result >= 0) {
+                return result;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Expected size in bytes for " + option + ", got: " + value);
+    }
+}
@@ -0,0 +1,124 @@
+package ru.ifmo.rain.badyaev.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * xxHash64 with zero seed, consumes input in 32-byte stripes of four 8-byte lanes
+ */
+class XxHash64 implements HashAlgorithm {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 32;
+
+    @Override
+    public String name() {
+        return "xxhash64";
+    }
+
+    @Override
+    public int digestLength() {
+        return Long.BYTES;
+    }
+
+    @Override
+    public Hasher newHasher() {
+        return new XxHasher();
+    }
+
+    private static long round(long acc, long lane) {
+        acc += lane * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME1 + PRIME4;
+    }
+
+    private static class XxHasher implements Hasher {
+        private long v1 = PRIME1 + PRIME2;
+        private long v2 = PRIME2;
+        private long v3 = 0;
+        private long v4 = -PRIME1;
+        private long total = 0;
+        private final ByteBuffer tail = ByteBuffer.allocate(STRIPE).order(ByteOrder.LITTLE_ENDIAN);
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            ByteBuffer input = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            total += input.remaining();
+
+            if (tail.position() > 0) {
+                while (tail.hasRemaining() && input.hasRemaining()) {
+                    tail.put(input.get());
+                }
+                if (tail.hasRemaining()) {
+                    buffer.position(buffer.limit());
+                    return;
+                }
+                stripe(tail, 0);
+                tail.clear();
+            }
+
+            int i = input.position();
+            int limit = input.limit();
+            for (; i + STRIPE <= limit; i += STRIPE) {
+                stripe(input, i);
+            }
+            for (; i < limit; i++) {
+                tail.put(input.get(i));
+            }
+            buffer.position(buffer.limit());
+        }
+
+        private void stripe(ByteBuffer input, int offset) {
+            v1 = round(v1, input.getLong(offset));
+            v2 = round(v2, input.getLong(offset + 8));
+            v3 = round(v3, input.getLong(offset + 16));
+            v4 = round(v4, input.getLong(offset + 24));
+        }
+
+        @Override
+        public byte[] digest() {
+            long hash;
+            if (total >= STRIPE) {
+                hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                hash = mergeRound(hash, v1);
+                hash = mergeRound(hash, v2);
+                hash = mergeRound(hash, v3);
+                hash = mergeRound(hash, v4);
+            } else {
+                hash = PRIME5;
+            }
+            hash += total;
+
+            int i = 0;
+            int limit = tail.position();
+            for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+                hash ^= round(0, tail.getLong(i));
+                hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+            }
+            if (i + Integer.BYTES <= limit) {
+                hash ^= (tail.getInt(i) & 0xFFFFFFFFL) * PRIME1;
+                hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+                i += Integer.BYTES;
+            }
+            for (; i < limit; i++) {
+                hash ^= (tail.get(i) & 255) * PRIME5;
+                hash = Long.rotateLeft(hash, 11) * PRIME1;
+            }
+
+            hash ^= hash >>> 33;
+            hash *= PRIME2;
+            hash ^= hash >>> 29;
+            hash *= PRIME3;
+            hash ^= hash >>> 32;
+            return ByteBuffer.allocate(Long.BYTES).putLong(hash).array();
+        }
+    }
+}